@@ -0,0 +1,66 @@
+package org.hansken.plugin.extraction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A single line of a chat log, which has the format 'sender:receiver message'.
+ */
+final class ChatMessage {
+
+    private final String _sender;
+    private final String _receiver;
+    private final String _message;
+
+    ChatMessage(final String sender, final String receiver, final String message) {
+        _sender = sender;
+        _receiver = receiver;
+        _message = message;
+    }
+
+    /**
+     * Parses a chat message from a range of UTF-8 encoded bytes, without first decoding the whole line to a
+     * {@link String}. Only the sender, receiver and message are decoded.
+     *
+     * @param bytes the bytes containing the line
+     * @param offset the offset of the line in {@code bytes}
+     * @param length the length of the line, excluding the line separator
+     * @return the parsed message, or {@code null} if the line does not have the expected format
+     */
+    static ChatMessage parse(final byte[] bytes, final int offset, final int length) {
+        final int end = offset + length;
+        // split contacts and message
+        final int contactsEnd = LineReader.indexOf(bytes, offset, end, (byte) ' ');
+        if (contactsEnd < 0) {
+            return null;
+        }
+        // split sender and receiver
+        final int senderEnd = LineReader.indexOf(bytes, offset, contactsEnd, (byte) ':');
+        if (senderEnd < 0) {
+            return null;
+        }
+        final int receiverEnd = LineReader.indexOf(bytes, senderEnd + 1, contactsEnd, (byte) ':');
+
+        return new ChatMessage(
+            new String(bytes, offset, senderEnd - offset, UTF_8),
+            new String(bytes, senderEnd + 1, (receiverEnd < 0 ? contactsEnd : receiverEnd) - senderEnd - 1, UTF_8),
+            new String(bytes, contactsEnd + 1, end - contactsEnd - 1, UTF_8));
+    }
+
+    String getSender() {
+        return _sender;
+    }
+
+    String getReceiver() {
+        return _receiver;
+    }
+
+    String getMessage() {
+        return _message;
+    }
+
+    String getConversationId() {
+        return _sender.compareTo(_receiver) < 0
+            ? _sender + "-" + _receiver
+            : _receiver + "-" + _sender;
+    }
+}
@@ -1,10 +1,11 @@
 package org.hansken.plugin.extraction;
 
 import static java.lang.String.format;
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.singletonList;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.hansken.plugin.extraction.api.Author;
 import org.hansken.plugin.extraction.api.DataContext;
@@ -12,6 +13,7 @@ import org.hansken.plugin.extraction.api.ExtractionPlugin;
 import org.hansken.plugin.extraction.api.MaturityLevel;
 import org.hansken.plugin.extraction.api.PluginId;
 import org.hansken.plugin.extraction.api.PluginInfo;
+import org.hansken.plugin.extraction.api.PluginResources;
 import org.hansken.plugin.extraction.api.RandomAccessData;
 import org.hansken.plugin.extraction.api.Trace;
 import org.slf4j.Logger;
@@ -26,6 +28,21 @@ public final class ChatPlugin implements ExtractionPlugin {
     private static final String TOOL_NAME = "ChatPluginJava";
     private static final String TOOL_LICENSE = "Apache License, Version 2.0";
 
+    private final ChatPluginSettings _settings;
+    // parses logs on multiple threads, or null if logs are parsed on the calling thread
+    private final ParallelChatLogParser _parallelParser;
+
+    public ChatPlugin() {
+        this(new ChatPluginSettings());
+    }
+
+    public ChatPlugin(final ChatPluginSettings settings) {
+        _settings = settings;
+        _parallelParser = settings.getParseThreads() > 1
+            ? new ParallelChatLogParser(settings.getParseThreads(), settings.getParseBlockSize())
+            : null;
+    }
+
     @Override
     public PluginInfo pluginInfo() {
         final Author author = Author.builder()
@@ -34,7 +51,7 @@ public final class ChatPlugin implements ExtractionPlugin {
             .organisation("NFI")
             .build();
 
-        return PluginInfo.builderFor(this)
+        final PluginInfo.Builder builder = PluginInfo.builderFor(this)
             .pluginVersion("1.0.0")
             .description("Example Extraction Plugin: Exclusive Chat format file parser")
             .author(author)
@@ -42,8 +59,15 @@ public final class ChatPlugin implements ExtractionPlugin {
             .webpageUrl("https://hansken.org")
             .hqlMatcher("file.extension=txt")
             .id(new PluginId(TOOL_DOMAIN, TOOL_CATEGORY, TOOL_NAME))
-            .license(TOOL_LICENSE)
-            .build();
+            .license(TOOL_LICENSE);
+
+        // a single log is parsed on multiple cores when parsing in parallel
+        if (_settings.getParseThreads() > 1) {
+            builder.resources(PluginResources.builder()
+                .maximumCpu(_settings.getParseThreads())
+                .build());
+        }
+        return builder.build();
     }
 
     @Override
@@ -55,62 +79,131 @@ public final class ChatPlugin implements ExtractionPlugin {
         // set the chat application property on the trace
         trace.addType("chatConversation").set("chatConversation.application", format("DemoApp %s", fileName));
 
-        final RandomAccessData data = dataContext.data();
-        final String[] chatMessages = new String(data.readNBytes((int) data.remaining()), UTF_8).split("\n");
-
-        // each message has the format 'sender:receiver message'
-        for (int index = 0; index < chatMessages.length; index++) {
-            // split contacts and message
-            final String[] contactsAndMessage = chatMessages[index].split(" ", 2);
-            // split sender and receiver
-            final String[] senderAndReceiver = contactsAndMessage[0].split(":");
-
-            final String sender = senderAndReceiver[0];
-            final String receiver = senderAndReceiver[1];
-            final String message = contactsAndMessage[1];
-            final String conversationId = sender.compareTo(receiver) < 0 ?
-                sender + "-" + receiver :
-                receiver + "-" + sender;
-
-            // add chat message
-            trace.newChild(format("message %d", index), messageTrace -> {
-                messageTrace.addType("chatMessage")
-                    .set("chatMessage.application", "DemoApp")
-                    .set("chatMessage.from", sender)
-                    .set("chatMessage.to", singletonList(receiver))  // list, because there can be multiple receivers
-                    .set("chatMessage.message", message);
-
-                // add a collection (tracelet of type FVT, see tracemodel for typing information)
-                messageTrace.addTracelet("collection", tracelet -> tracelet
+        final MessageWriter writer = new MessageWriter(trace);
+        if (_parallelParser != null) {
+            // parse blocks of the log on multiple threads, the messages are still added in the order of the log
+            _parallelParser.parse(dataContext.data(), fileName, writer::add);
+        }
+        else {
+            parse(dataContext.data(), fileName, writer);
+        }
+    }
+
+    static IOException malformedMessage(final String fileName, final int lineNumber) {
+        return new IOException(format("malformed chat message on line %d of %s", lineNumber, fileName));
+    }
+
+    private static void parse(final RandomAccessData data, final String fileName, final MessageWriter writer)
+        throws IOException {
+        // read the log line by line, so we don't need to hold the full log in memory
+        final LineReader lines = new LineReader(data);
+        int lineNumber = 0;
+        while (lines.nextLine()) {
+            lineNumber++;
+            // skip empty lines, such as a trailing new line at the end of the log
+            if (lines.length() == 0) {
+                continue;
+            }
+
+            // each message has the format 'sender:receiver message'
+            final ChatMessage chatMessage = ChatMessage.parse(lines.buffer(), lines.offset(), lines.length());
+            if (chatMessage == null) {
+                throw malformedMessage(fileName, lineNumber);
+            }
+            writer.add(chatMessage);
+        }
+    }
+
+    private static void addConversationContacts(final Trace trace, final ChatMessage chatMessage) throws IOException {
+        final String conversationId = chatMessage.getConversationId();
+        for (final String contact : new String[]{chatMessage.getSender(), chatMessage.getReceiver()}) {
+            trace.newChild(format("contact %s (%s)", contact, conversationId), contactTrace -> {
+                contactTrace.addType("contact")
+                    .set("contact.application", "DemoApp")
+                    .set("contact.name", contact);
+
+                // refer to the conversation in the same way as the messages of this conversation do
+                contactTrace.addTracelet("collection", tracelet -> tracelet
                     .set("name", conversationId)
                     .set("type", "chatConversation"));
+            });
+        }
+    }
 
-                // add two entities (tracelet of type MVT, see tracemodel for typing information)
-                // (!) works with Hansken 45.19.0 or higher
-                messageTrace.addTracelet("entity", tracelet -> tracelet
-                    .set("confidence", 0.76)
-                    .set("type", "name")
-                    .set("value", sender));
-
-                messageTrace.addTracelet("entity", tracelet -> tracelet
-                    .set("confidence", 0.79)
-                    .set("type", "name")
-                    .set("value", receiver));
-
-
-                // add contacts as children of each message (they are the same for each message in the log,
-                // but it just shows an example)
-                messageTrace.newChild(sender, contactTrace -> {
-                    contactTrace.addType("contact")
-                        .set("contact.application", "DemoApp")
-                        .set("contact.name", sender);
-                });
-                messageTrace.newChild(receiver, contactTrace -> {
-                    contactTrace.addType("contact")
-                        .set("contact.application", "DemoApp")
-                        .set("contact.name", receiver);
-                });
+    private static void addMessage(final Trace trace, final int index, final ChatMessage chatMessage,
+                                   final boolean withContacts) throws IOException {
+        final String sender = chatMessage.getSender();
+        final String receiver = chatMessage.getReceiver();
+        final String message = chatMessage.getMessage();
+        final String conversationId = chatMessage.getConversationId();
+
+        // add chat message
+        trace.newChild(format("message %d", index), messageTrace -> {
+            messageTrace.addType("chatMessage")
+                .set("chatMessage.application", "DemoApp")
+                .set("chatMessage.from", sender)
+                .set("chatMessage.to", singletonList(receiver))  // list, because there can be multiple receivers
+                .set("chatMessage.message", message);
+
+            // add a collection (tracelet of type FVT, see tracemodel for typing information)
+            messageTrace.addTracelet("collection", tracelet -> tracelet
+                .set("name", conversationId)
+                .set("type", "chatConversation"));
+
+            // add two entities (tracelet of type MVT, see tracemodel for typing information)
+            // (!) works with Hansken 45.19.0 or higher
+            messageTrace.addTracelet("entity", tracelet -> tracelet
+                .set("confidence", 0.76)
+                .set("type", "name")
+                .set("value", sender));
+
+            messageTrace.addTracelet("entity", tracelet -> tracelet
+                .set("confidence", 0.79)
+                .set("type", "name")
+                .set("value", receiver));
+
+            if (!withContacts) {
+                return;
+            }
+
+            // add contacts as children of each message (they are the same for each message in the log,
+            // but it just shows an example, see ContactMode.PER_CONVERSATION for adding them only once)
+            messageTrace.newChild(sender, contactTrace -> {
+                contactTrace.addType("contact")
+                    .set("contact.application", "DemoApp")
+                    .set("contact.name", sender);
+            });
+            messageTrace.newChild(receiver, contactTrace -> {
+                contactTrace.addType("contact")
+                    .set("contact.application", "DemoApp")
+                    .set("contact.name", receiver);
             });
+        });
+    }
+
+    /**
+     * Adds the parsed messages (and their contacts) as children of the chat log trace, in the order of the log.
+     */
+    private final class MessageWriter {
+        private final Trace _trace;
+        // the conversations for which the contacts have been added (only used for ContactMode.PER_CONVERSATION)
+        private final Set<String> _conversations = new HashSet<>();
+        private int _index;
+
+        MessageWriter(final Trace trace) {
+            _trace = trace;
+        }
+
+        void add(final ChatMessage chatMessage) throws IOException {
+            if (_settings.getContactMode() == ChatPluginSettings.ContactMode.PER_MESSAGE) {
+                addMessage(_trace, _index++, chatMessage, true);
+            }
+            else {
+                if (_conversations.add(chatMessage.getConversationId())) {
+                    addConversationContacts(_trace, chatMessage);
+                }
+                addMessage(_trace, _index++, chatMessage, false);
+            }
         }
     }
 }
@@ -1,9 +1,19 @@
 package org.hansken.plugin.extraction;
 
+import org.hansken.plugin.extraction.ChatPluginSettings.ContactMode;
 import org.hansken.plugin.extraction.runtime.grpc.server.ExtractionPluginServerMain;
 
 public class ChatPluginMain {
+
+    // the system property selecting where contacts are added, PER_MESSAGE or PER_CONVERSATION
+    private static final String CONTACT_MODE_PROPERTY = "contactMode";
+    // the system property with the number of threads parsing a single chat log
+    private static final String PARSE_THREADS_PROPERTY = "parseThreads";
+
     public static void main(String... args) throws Exception {
-        ExtractionPluginServerMain.runMain(ChatPlugin::new, args);
+        final ContactMode contactMode = ContactMode.valueOf(System.getProperty(CONTACT_MODE_PROPERTY, ContactMode.PER_MESSAGE.name()));
+        final int parseThreads = Integer.getInteger(PARSE_THREADS_PROPERTY, 1);
+        final ChatPluginSettings settings = new ChatPluginSettings(contactMode, parseThreads);
+        ExtractionPluginServerMain.runMain(() -> new ChatPlugin(settings), args);
     }
 }
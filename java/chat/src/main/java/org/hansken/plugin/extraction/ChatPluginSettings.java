@@ -0,0 +1,66 @@
+package org.hansken.plugin.extraction;
+
+public class ChatPluginSettings {
+
+    /**
+     * Where the contacts of a message are added to the trace tree.
+     */
+    public enum ContactMode {
+        /**
+         * Add the sender and receiver as children of every message.
+         */
+        PER_MESSAGE,
+        /**
+         * Add the sender and receiver once per conversation, as children of the chat log itself. The messages
+         * refer to them by their conversation (collection) and entities.
+         */
+        PER_CONVERSATION
+    }
+
+    private final ContactMode _contactMode;
+
+    /**
+     * The number of threads used to parse a single chat log. With more than one thread, the log is cut into blocks
+     * at line boundaries which are parsed in parallel.
+     */
+    private final int _parseThreads;
+
+    /**
+     * The size of the blocks a chat log is cut into when it is parsed on multiple threads.
+     */
+    private final int _parseBlockSize;
+
+    public ChatPluginSettings() {
+        this(ContactMode.PER_MESSAGE);
+    }
+
+    public ChatPluginSettings(final ContactMode contactMode) {
+        this(contactMode, 1);
+    }
+
+    public ChatPluginSettings(final ContactMode contactMode, final int parseThreads) {
+        this(contactMode, parseThreads, ParallelChatLogParser.DEFAULT_BLOCK_SIZE);
+    }
+
+    public ChatPluginSettings(final ContactMode contactMode, final int parseThreads, final int parseBlockSize) {
+        if (parseThreads < 1 || parseBlockSize < 1) {
+            throw new IllegalArgumentException("parseThreads and parseBlockSize must be at least 1: "
+                + parseThreads + ", " + parseBlockSize);
+        }
+        _contactMode = contactMode;
+        _parseThreads = parseThreads;
+        _parseBlockSize = parseBlockSize;
+    }
+
+    public ContactMode getContactMode() {
+        return _contactMode;
+    }
+
+    public int getParseThreads() {
+        return _parseThreads;
+    }
+
+    public int getParseBlockSize() {
+        return _parseBlockSize;
+    }
+}
@@ -0,0 +1,129 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * Reads '\n' separated lines from a {@link RandomAccessData} using a fixed size read buffer, so the memory used
+ * does not depend on the size of the data. Only a line which does not fit in the read buffer is copied to a
+ * separate (growing) buffer.
+ * <p>
+ * The current line is exposed as a byte range through {@link #buffer()}, {@link #offset()} and {@link #length()},
+ * which is only valid until the next call to {@link #nextLine()}. The line separator is not part of the line.
+ */
+final class LineReader {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024; // 64 KiB
+
+    private static final byte LINE_SEPARATOR = '\n';
+
+    private final RandomAccessData _data;
+    private final byte[] _buffer;
+    private int _position;
+    private int _limit;
+
+    private byte[] _carry = new byte[0];
+
+    private byte[] _line;
+    private int _lineOffset;
+    private int _lineLength;
+
+    LineReader(final RandomAccessData data) {
+        this(data, DEFAULT_BUFFER_SIZE);
+    }
+
+    LineReader(final RandomAccessData data, final int bufferSize) {
+        _data = data;
+        _buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Moves to the next line of the data.
+     *
+     * @return {@code true} if there is a next line, {@code false} if the end of the data was reached
+     * @throws IOException when reading the data fails
+     */
+    boolean nextLine() throws IOException {
+        int carried = 0;
+        while (true) {
+            if (_position == _limit && !fill()) {
+                // the last line is not terminated by a line separator
+                if (carried == 0) {
+                    return false;
+                }
+                setLine(_carry, 0, carried);
+                return true;
+            }
+
+            final int separator = indexOf(_buffer, _position, _limit, LINE_SEPARATOR);
+            if (separator < 0) {
+                // the line continues in the next block of data, so keep what we have so far
+                carried = carry(carried, _position, _limit);
+                _position = _limit;
+                continue;
+            }
+
+            if (carried == 0) {
+                setLine(_buffer, _position, separator - _position);
+            }
+            else {
+                final int length = carry(carried, _position, separator);
+                setLine(_carry, 0, length);
+            }
+            _position = separator + 1;
+            return true;
+        }
+    }
+
+    byte[] buffer() {
+        return _line;
+    }
+
+    int offset() {
+        return _lineOffset;
+    }
+
+    int length() {
+        return _lineLength;
+    }
+
+    static int indexOf(final byte[] bytes, final int from, final int to, final byte value) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fill() throws IOException {
+        final long remaining = _data.remaining();
+        if (remaining <= 0) {
+            return false;
+        }
+        final int read = _data.read(_buffer, (int) Math.min(_buffer.length, remaining));
+        if (read <= 0) {
+            return false;
+        }
+        _position = 0;
+        _limit = read;
+        return true;
+    }
+
+    private int carry(final int carried, final int from, final int to) {
+        final int length = carried + (to - from);
+        if (length > _carry.length) {
+            _carry = Arrays.copyOf(_carry, Math.max(length, 2 * _carry.length));
+        }
+        System.arraycopy(_buffer, from, _carry, carried, to - from);
+        return length;
+    }
+
+    private void setLine(final byte[] line, final int offset, final int length) {
+        _line = line;
+        _lineOffset = offset;
+        _lineLength = length;
+    }
+}
@@ -0,0 +1,164 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * Parses a chat log on multiple threads. The log is read in blocks which are cut at a line boundary, the blocks
+ * are parsed on a bounded thread pool, and the parsed messages are handed to a {@link MessageHandler} in the
+ * order in which they appear in the log. The data itself is read sequentially by the calling thread.
+ * <p>
+ * At most two blocks per thread are read ahead, so the memory used is bounded by the block size and the number of
+ * threads, not by the size of the log. The thread pool is created once and shared by all logs parsed with this
+ * parser, also when they are parsed at the same time, so the number of parsing threads stays bounded.
+ */
+final class ParallelChatLogParser {
+
+    static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024; // 4 MiB
+
+    /**
+     * Handles the parsed messages, in the order of the log.
+     */
+    @FunctionalInterface
+    interface MessageHandler {
+        void handle(ChatMessage message) throws IOException;
+    }
+
+    private final int _threads;
+    private final int _blockSize;
+    private final ExecutorService _executor;
+
+    ParallelChatLogParser(final int threads, final int blockSize) {
+        _threads = threads;
+        _blockSize = blockSize;
+        // daemon threads, the plugin has no life cycle to shut the pool down at
+        _executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "chat-log-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void parse(final RandomAccessData data, final String fileName, final MessageHandler handler) throws IOException {
+        final Deque<Future<ParsedBlock>> pending = new ArrayDeque<>();
+        try {
+            final int maxPending = 2 * _threads;
+            int lineNumber = 0;
+
+            byte[] carry = new byte[0];
+            while (data.remaining() > 0) {
+                final byte[] read = data.readNBytes((int) Math.min(_blockSize, data.remaining()));
+                final byte[] bytes = concat(carry, read);
+                // cut the block after the last complete line, the rest is carried over to the next block
+                final int end = data.remaining() > 0 ? lastIndexOf(bytes, (byte) '\n') + 1 : bytes.length;
+                carry = Arrays.copyOfRange(bytes, end, bytes.length);
+                if (end == 0) {
+                    // no complete line in this block yet
+                    continue;
+                }
+
+                pending.add(_executor.submit(() -> parseBlock(bytes, end)));
+                if (pending.size() >= maxPending) {
+                    lineNumber = handle(pending.remove(), lineNumber, fileName, handler);
+                }
+            }
+            while (!pending.isEmpty()) {
+                lineNumber = handle(pending.remove(), lineNumber, fileName, handler);
+            }
+        }
+        finally {
+            // blocks still pending after a failure are not needed anymore
+            for (final Future<ParsedBlock> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static int handle(final Future<ParsedBlock> future, final int lineNumber, final String fileName,
+                              final MessageHandler handler) throws IOException {
+        final ParsedBlock block = await(future);
+        for (final ChatMessage message : block._messages) {
+            handler.handle(message);
+        }
+        if (block._malformedLine > 0) {
+            throw ChatPlugin.malformedMessage(fileName, lineNumber + block._malformedLine);
+        }
+        return lineNumber + block._lines;
+    }
+
+    private static ParsedBlock parseBlock(final byte[] bytes, final int length) {
+        final List<ChatMessage> messages = new ArrayList<>();
+        int lines = 0;
+        int start = 0;
+        while (start < length) {
+            final int separator = LineReader.indexOf(bytes, start, length, (byte) '\n');
+            final int end = separator < 0 ? length : separator;
+            lines++;
+            // skip empty lines, in the same way as the sequential parser does
+            if (end > start) {
+                final ChatMessage message = ChatMessage.parse(bytes, start, end - start);
+                if (message == null) {
+                    return new ParsedBlock(messages, lines, lines);
+                }
+                messages.add(message);
+            }
+            start = end + 1;
+        }
+        return new ParsedBlock(messages, lines, 0);
+    }
+
+    private static ParsedBlock await(final Future<ParsedBlock> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while parsing chat log");
+        }
+        catch (final ExecutionException e) {
+            throw new IOException("failed to parse chat log", e.getCause());
+        }
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        if (first.length == 0) {
+            return second;
+        }
+        final byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static int lastIndexOf(final byte[] bytes, final byte value) {
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class ParsedBlock {
+        private final List<ChatMessage> _messages;
+        private final int _lines;
+        // the line number within the block of the first malformed line, or 0 if there is none
+        private final int _malformedLine;
+
+        ParsedBlock(final List<ChatMessage> messages, final int lines, final int malformedLine) {
+            _messages = messages;
+            _lines = lines;
+            _malformedLine = malformedLine;
+        }
+    }
+}
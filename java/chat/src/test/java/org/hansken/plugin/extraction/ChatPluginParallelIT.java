@@ -0,0 +1,36 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.ChatPluginSettings.ContactMode;
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Parses the chat logs on multiple threads, in blocks small enough to cut every log into many blocks. The results
+ * are the same as those of the sequential parser, including the order of the messages.
+ */
+class ChatPluginParallelIT extends EmbeddedExtractionPluginFlits {
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new ChatPlugin(new ChatPluginSettings(ContactMode.PER_MESSAGE, 4, 64));
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.ChatPluginSettings.ContactMode;
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Parses the chat logs with the contacts added once per conversation, as children of the chat log.
+ */
+class ChatPluginPerConversationIT extends EmbeddedExtractionPluginFlits {
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new ChatPlugin(new ChatPluginSettings(ContactMode.PER_CONVERSATION));
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results-per-conversation");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
@@ -1,8 +1,14 @@
 package org.hansken.plugin.extraction;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.hansken.plugin.extraction.api.Author;
 import org.hansken.plugin.extraction.api.DataContext;
@@ -10,6 +16,7 @@ import org.hansken.plugin.extraction.api.ExtractionPlugin;
 import org.hansken.plugin.extraction.api.MaturityLevel;
 import org.hansken.plugin.extraction.api.PluginId;
 import org.hansken.plugin.extraction.api.PluginInfo;
+import org.hansken.plugin.extraction.api.PluginResources;
 import org.hansken.plugin.extraction.api.RandomAccessData;
 import org.hansken.plugin.extraction.api.Trace;
 import org.slf4j.Logger;
@@ -18,13 +25,37 @@ import org.slf4j.LoggerFactory;
 public final class DataDigestPlugin implements ExtractionPlugin {
 
     private static final Logger LOG = LoggerFactory.getLogger(DataDigestPlugin.class);
-    private static final int CHUNK_SIZE = 1024 * 1024; // 1 MiB
 
     private static final String TOOL_DOMAIN = "nfi.nl";
     private static final String TOOL_CATEGORY = "digest";
     private static final String TOOL_NAME = "DataDigestPluginJava";
     private static final String TOOL_LICENSE = "Apache License, Version 2.0";
 
+    // the hash list of the segments of a data stream is written to a data stream of this type, appended to its type
+    static final String SEGMENTS_TYPE_SUFFIX = "-sha256-segments";
+
+    private final DataDigestSettings _settings;
+    // the chunk buffer of each thread processing traces, reused for every chunk
+    private final ThreadLocal<byte[]> _buffers;
+    // the digests of data seen before, or null if digests are not cached
+    private final DigestCache _cache;
+    // the saved progress of hashing large data, or null if no checkpoints are saved
+    private final DigestCheckpoints _checkpoints;
+    // runs the hashers of the digest pipelines of all traces
+    private final ExecutorService _hashers;
+
+    public DataDigestPlugin() {
+        this(DataDigestSettings.builder().build());
+    }
+
+    public DataDigestPlugin(final DataDigestSettings settings) {
+        _settings = settings;
+        _buffers = ThreadLocal.withInitial(() -> new byte[settings.getChunkSize()]);
+        _cache = settings.getCacheFile() == null ? null : sharedCache(settings);
+        _checkpoints = settings.getCheckpointDirectory() == null ? null : new DigestCheckpoints(settings.getCheckpointDirectory());
+        _hashers = DigestPipeline.newHasherPool();
+    }
+
     @Override
     public PluginInfo pluginInfo() {
         final Author author = Author.builder()
@@ -33,7 +64,7 @@ public final class DataDigestPlugin implements ExtractionPlugin {
             .organisation("NFI")
             .build();
 
-        return PluginInfo.builderFor(this)
+        final PluginInfo.Builder builder = PluginInfo.builderFor(this)
             .pluginVersion("1.0.0")
             .description("Example Extraction Plugin: Data digest plugin (reads the data in chunks and calculates the hash)")
             .author(author)
@@ -41,42 +72,276 @@ public final class DataDigestPlugin implements ExtractionPlugin {
             .webpageUrl("https://hansken.org")
             .hqlMatcher("$data.type=*")
             .id(new PluginId(TOOL_DOMAIN, TOOL_CATEGORY, TOOL_NAME))
-            .license(TOOL_LICENSE)
-            .build();
+            .license(TOOL_LICENSE);
+
+        // each digest, and each lane of segment hashes, is calculated on a core of its own
+        final int hashers = _settings.getAlgorithms().size()
+            + (_settings.getSegmentSize() > 0 ? _settings.getSegmentThreads() : 0);
+        if (hashers > 1) {
+            builder.resources(PluginResources.builder()
+                .maximumCpu(hashers)
+                .build());
+        }
+        return builder.build();
     }
 
     @Override
     public void process(final Trace trace, final DataContext dataContext) throws IOException {
-        final MessageDigest messageDigest = sha256MessageDigest();
         final RandomAccessData data = dataContext.data();
         final String dataType = dataContext.dataType();
+        final List<DigestAlgorithm> algorithms = new ArrayList<>(_settings.getAlgorithms());
+
+        final long size = data.size();
+        final byte[][] digests;
+        if (isSegmented(dataType)) {
+            final SegmentHashes segments = new SegmentHashes(size, _settings.getSegmentSize());
+            digests = segmentedDigests(data, segments, algorithms);
+            trace.setData(dataType + SEGMENTS_TYPE_SUFFIX, segments::write);
+        }
+        else {
+            // a data stream is identified by its trace and type, to resume hashing it from a checkpoint
+            digests = digests(data, trace.traceId() + "/" + dataType, algorithms);
+        }
+
+        for (int i = 0; i < algorithms.size(); i++) {
+            final String digest = bytesToHex(digests[i]);
+            trace.addType("data").set(String.format("data.%s.hash.%s", dataType, algorithms.get(i).propertyName()), digest);
+        }
+    }
+
+    // calculates the digests of data which is not split into segments, or takes them from the cache
+    // (package-private for DataDigestPluginCacheTest and DataDigestPluginCheckpointTest)
+    byte[][] digests(final RandomAccessData data, final String identity, final List<DigestAlgorithm> algorithms)
+        throws IOException {
+        return isCached(data.size())
+            ? cachedDigests(data, identity, algorithms)
+            : calculateDigests(data, identity, algorithms);
+    }
+
+    private boolean isSegmented(final String dataType) {
+        // a hash list itself is not split into segments again
+        return _settings.getSegmentSize() > 0 && !dataType.endsWith(SEGMENTS_TYPE_SUFFIX);
+    }
+
+    private boolean isCached(final long size) {
+        // the fingerprint of the data reads three chunks, so smaller data is always hashed in full
+        return _cache != null && size >= _settings.getCacheMinimumSize() && size > 3L * _settings.getChunkSize();
+    }
+
+    private boolean isCheckpointed(final long size, final List<DigestAlgorithm> algorithms) {
+        // only the progress of a SHA-256 digest can be saved, by the slower Sha256: smaller data is hashed by a
+        // MessageDigest, it is cheaper to hash it again than to save its progress
+        return _checkpoints != null && algorithms.equals(List.of(DigestAlgorithm.SHA256))
+            && size >= _settings.getCheckpointMinimumSize() && size > _settings.getCheckpointInterval();
+    }
+
+    // takes the digests from the cache, or calculates and caches them when they are not all in the cache
+    private byte[][] cachedDigests(final RandomAccessData data, final String identity,
+                                   final List<DigestAlgorithm> algorithms) throws IOException {
+        final long size = data.size();
+        // data is looked up by its size and fingerprint, which only reads three chunks of it
+        final byte[] fingerprint = DataFingerprint.of(data, _buffers.get(), _settings.getChunkSize());
+        byte[][] cached = new byte[algorithms.size()][];
+        for (int i = 0; i < algorithms.size() && cached != null; i++) {
+            cached[i] = _cache.get(size, fingerprint, algorithms.get(i));
+            if (cached[i] == null) {
+                cached = null;
+            }
+        }
+        LOG.info("Digest cache hit rate: {} of {} lookups", _cache.hits(), _cache.lookups());
+        if (cached != null && !_settings.isVerifyCache()) {
+            return cached;
+        }
+
+        final byte[][] digests = calculateDigests(data, identity, algorithms);
+        for (int i = 0; cached != null && i < algorithms.size(); i++) {
+            if (!Arrays.equals(cached[i], digests[i])) {
+                LOG.warn("Cached {} digest {} differs from calculated digest {}", algorithms.get(i).propertyName(),
+                    bytesToHex(cached[i]), bytesToHex(digests[i]));
+            }
+        }
+        for (int i = 0; i < algorithms.size(); i++) {
+            _cache.put(size, fingerprint, algorithms.get(i), digests[i]);
+        }
+        return digests;
+    }
+
+    private byte[][] calculateDigests(final RandomAccessData data, final String identity,
+                                      final List<DigestAlgorithm> algorithms) throws IOException {
+        if (isCheckpointed(data.size(), algorithms)) {
+            return new byte[][] {checkpointedDigest(data, identity)};
+        }
+
+        final List<MessageDigest> messageDigests = newMessageDigests(algorithms);
+        if (messageDigests.size() == 1) {
+            digest(data, messageDigests.get(0));
+        }
+        else {
+            digest(data, updating(messageDigests));
+        }
+        return complete(messageDigests);
+    }
+
+    // calculates the digests of the data, and the hashes of its segments, reading the data once
+    private byte[][] segmentedDigests(final RandomAccessData data, final SegmentHashes segments,
+                                      final List<DigestAlgorithm> algorithms) throws IOException {
+        final List<MessageDigest> messageDigests = newMessageDigests(algorithms);
+        final List<DigestPipeline.ChunkConsumer> consumers = updating(messageDigests);
+        consumers.addAll(segments.lanes(_settings.getSegmentThreads()));
+        digest(data, consumers);
+        return complete(messageDigests);
+    }
+
+    private static List<MessageDigest> newMessageDigests(final List<DigestAlgorithm> algorithms) {
+        final List<MessageDigest> messageDigests = new ArrayList<>();
+        for (final DigestAlgorithm algorithm : algorithms) {
+            messageDigests.add(algorithm.newMessageDigest());
+        }
+        return messageDigests;
+    }
+
+    private static List<DigestPipeline.ChunkConsumer> updating(final List<MessageDigest> messageDigests) {
+        final List<DigestPipeline.ChunkConsumer> consumers = new ArrayList<>();
+        for (final MessageDigest messageDigest : messageDigests) {
+            consumers.add(DigestPipeline.updating(messageDigest));
+        }
+        return consumers;
+    }
+
+    private static byte[][] complete(final List<MessageDigest> messageDigests) {
+        final byte[][] digests = new byte[messageDigests.size()][];
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = messageDigests.get(i).digest();
+        }
+        return digests;
+    }
+
+    // package-private for ChunkLoopBenchmark
+    void digest(final RandomAccessData data, final MessageDigest messageDigest) throws IOException {
+        final int chunkSize = _settings.getChunkSize();
+        final byte[] buffer = _buffers.get();
         final long size = data.size();
 
         // calculate total chunks, including the last chunk which can be smaller than the chunk size
         // formula to calculate total chunks: (a + b - 1) / b
         // for example 5 / 2 = 3 -> (5 + 2 - 1) / 2 = 3
-        final long totalChunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final long totalChunks = (size + chunkSize - 1) / chunkSize;
 
-        for (int currentChunk = 0; currentChunk < totalChunks; currentChunk++) {
-            final long position = (long) currentChunk * CHUNK_SIZE;
-            final byte[] bytes = data.remaining() < CHUNK_SIZE
-                ? data.readNBytes((int) (size - position))
-                : data.readNBytes(CHUNK_SIZE);
+        for (long currentChunk = 0; currentChunk < totalChunks; currentChunk++) {
+            final long position = currentChunk * chunkSize;
+            final int length = (int) Math.min(chunkSize, size - position);
+            readFully(data, buffer, length);
 
-            messageDigest.update(bytes);
+            messageDigest.update(buffer, 0, length);
             LOG.info("Processed chunk {}/{}", currentChunk + 1, totalChunks);
         }
+    }
+
+    // calculates a SHA-256 digest, continuing from the last checkpoint of the data and saving new checkpoints
+    private byte[] checkpointedDigest(final RandomAccessData data, final String identity) throws IOException {
+        final long interval = _settings.getCheckpointInterval();
+        final long size = data.size();
+
+        Sha256 digest = new Sha256();
+        final DigestCheckpoints.Checkpoint checkpoint = _checkpoints.load(identity, size);
+        if (checkpoint != null) {
+            // the data stream has the same trace id, type and size; only the last chunk before the checkpoint is read
+            // again to check it is the same data, instead of all data before the checkpoint
+            final long end = checkpoint.digest().length();
+            if (isLastChunk(data, end, checkpoint.lastChunk())) {
+                LOG.info("Resuming digest from checkpoint at byte {} of {}", end, size);
+                digest = checkpoint.digest();
+            }
+            else {
+                LOG.warn("Ignoring digest checkpoint of {}, its data differs", identity);
+            }
+        }
 
-        final String digest = bytesToHex(messageDigest.digest());
-        trace.addType("data").set(String.format("data.%s.hash.sha256", dataType), digest);
+        // the digest is updated on a thread of its own, while the next chunks are read
+        final Sha256 resumed = digest;
+        final DigestPipeline.ChunkConsumer checkpointing = (bytes, position, length) -> {
+            resumed.update(bytes, 0, length);
+            final long end = position + length;
+            if (end < size && end / interval > position / interval) {
+                try {
+                    _checkpoints.save(identity, size, lastChunk(bytes, length), resumed);
+                }
+                catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        digest(data, List.of(checkpointing), resumed.length());
+
+        final byte[] result = resumed.digest();
+        _checkpoints.delete(identity);
+        return result;
+    }
+
+    // the check of the chunk hashed last before a checkpoint: its length and its SHA-256 digest
+    private static byte[] lastChunk(final byte[] bytes, final int length) {
+        final MessageDigest digest = DigestAlgorithm.SHA256.newMessageDigest();
+        digest.update(bytes, 0, length);
+        return ByteBuffer.allocate(DigestCheckpoints.LAST_CHUNK_LENGTH)
+            .putInt(length)
+            .put(digest.digest())
+            .array();
+    }
+
+    // whether the chunk ending at the given position is the chunk hashed last before a checkpoint
+    private boolean isLastChunk(final RandomAccessData data, final long end, final byte[] lastChunk) throws IOException {
+        final int length = ByteBuffer.wrap(lastChunk).getInt();
+        if (length > end || length > _settings.getChunkSize()) {
+            return false;
+        }
+        final byte[] buffer = _buffers.get();
+        data.seek(end - length);
+        readFully(data, buffer, length);
+        return Arrays.equals(lastChunk, lastChunk(buffer, length));
+    }
+
+    // reads every chunk once, and hands it to the consumers concurrently
+    private void digest(final RandomAccessData data, final List<DigestPipeline.ChunkConsumer> consumers) throws IOException {
+        digest(data, consumers, 0);
+    }
+
+    // reads every chunk from the given position on once, and hands it to the consumers concurrently
+    private void digest(final RandomAccessData data, final List<DigestPipeline.ChunkConsumer> consumers,
+                        final long start) throws IOException {
+        final int chunkSize = _settings.getChunkSize();
+        final long size = data.size();
+        final long totalChunks = (size + chunkSize - 1) / chunkSize;
+
+        data.seek(start);
+        try (DigestPipeline pipeline = new DigestPipeline(_hashers, consumers, chunkSize, _settings.getBufferCount())) {
+            int length;
+            for (long position = start; position < size; position += length) {
+                length = (int) Math.min(chunkSize, size - position);
+
+                final DigestPipeline.Chunk chunk = pipeline.acquire();
+                readFully(data, chunk.bytes(), length);
+                chunk.set(position, length);
+                pipeline.submit(chunk);
+                LOG.info("Processed chunk {}/{}", (position + length + chunkSize - 1) / chunkSize, totalChunks);
+            }
+            pipeline.finish();
+        }
+    }
+
+    private static void readFully(final RandomAccessData data, final byte[] buffer, final int length) throws IOException {
+        final int read = data.read(buffer, length);
+        if (read != length) {
+            throw new EOFException(String.format("expected %d bytes, but only %d could be read", length, read));
+        }
     }
 
-    private MessageDigest sha256MessageDigest() {
+    private static DigestCache sharedCache(final DataDigestSettings settings) {
         try {
-            return MessageDigest.getInstance("SHA-256");
+            // the plugin may be created more than once, but the cache file is only opened once per process
+            return DigestCache.shared(settings.getCacheFile(), settings.getCacheEntries());
         }
-        catch (final NoSuchAlgorithmException e) {
-            throw new IllegalStateException("Invalid algorithm", e);
+        catch (final IOException e) {
+            throw new UncheckedIOException("could not open digest cache " + settings.getCacheFile(), e);
         }
     }
 
@@ -1,9 +1,71 @@
 package org.hansken.plugin.extraction;
 
+import java.nio.file.Path;
+
 import org.hansken.plugin.extraction.runtime.grpc.server.ExtractionPluginServerMain;
 
 public class DataDigestPluginMain {
+
+    // the system property with a comma separated list of digests to calculate, for example 'md5,sha1,sha256'
+    private static final String ALGORITHMS_PROPERTY = "algorithms";
+    // the system property with the number of bytes read and hashed at once
+    private static final String CHUNK_SIZE_PROPERTY = "chunkSize";
+    // the system property setting the number of chunk buffers the reader can be ahead of the hashers
+    private static final String BUFFER_COUNT_PROPERTY = "bufferCount";
+    // the system properties enabling the digest cache, and setting its maximum number of digests
+    private static final String CACHE_FILE_PROPERTY = "digestCache";
+    private static final String CACHE_ENTRIES_PROPERTY = "digestCacheEntries";
+    // the system property enabling the verification of cached digests
+    private static final String VERIFY_CACHE_PROPERTY = "verifyDigestCache";
+    // the system properties enabling checkpoints, and setting the number of bytes between two checkpoints and the
+    // minimum size of data with checkpoints
+    private static final String CHECKPOINT_DIRECTORY_PROPERTY = "digestCheckpoints";
+    private static final String CHECKPOINT_INTERVAL_PROPERTY = "digestCheckpointInterval";
+    private static final String CHECKPOINT_MINIMUM_SIZE_PROPERTY = "digestCheckpointMinimumSize";
+    // the system properties enabling segment hashes, and setting the number of threads calculating them
+    private static final String SEGMENT_SIZE_PROPERTY = "segmentSize";
+    private static final String SEGMENT_THREADS_PROPERTY = "segmentThreads";
+
     public static void main(final String... args) {
-        ExtractionPluginServerMain.runMain(DataDigestPlugin::new, args);
+        final DataDigestSettings.Builder settings = DataDigestSettings.builder();
+        final String algorithms = System.getProperty(ALGORITHMS_PROPERTY);
+        if (algorithms != null) {
+            final String[] names = algorithms.split(",");
+            final DigestAlgorithm[] others = new DigestAlgorithm[names.length - 1];
+            for (int i = 1; i < names.length; i++) {
+                others[i - 1] = DigestAlgorithm.forPropertyName(names[i].trim());
+            }
+            settings.algorithms(DigestAlgorithm.forPropertyName(names[0].trim()), others);
+        }
+        final String chunkSize = System.getProperty(CHUNK_SIZE_PROPERTY);
+        if (chunkSize != null) {
+            settings.chunkSize(Integer.parseInt(chunkSize));
+        }
+        final String bufferCount = System.getProperty(BUFFER_COUNT_PROPERTY);
+        if (bufferCount != null) {
+            settings.bufferCount(Integer.parseInt(bufferCount));
+        }
+        final String cacheFile = System.getProperty(CACHE_FILE_PROPERTY);
+        if (cacheFile != null) {
+            settings.cache(Path.of(cacheFile), Integer.getInteger(CACHE_ENTRIES_PROPERTY, 64 * 1024))
+                .verifyCache(Boolean.getBoolean(VERIFY_CACHE_PROPERTY));
+        }
+        final String checkpointDirectory = System.getProperty(CHECKPOINT_DIRECTORY_PROPERTY);
+        if (checkpointDirectory != null) {
+            settings.checkpoints(Path.of(checkpointDirectory),
+                Long.getLong(CHECKPOINT_INTERVAL_PROPERTY, 1024L * 1024 * 1024));
+            final String checkpointMinimumSize = System.getProperty(CHECKPOINT_MINIMUM_SIZE_PROPERTY);
+            if (checkpointMinimumSize != null) {
+                settings.checkpointMinimumSize(Long.parseLong(checkpointMinimumSize));
+            }
+        }
+        final String segmentSize = System.getProperty(SEGMENT_SIZE_PROPERTY);
+        if (segmentSize != null) {
+            settings.segmentHashes(Long.parseLong(segmentSize),
+                Integer.getInteger(SEGMENT_THREADS_PROPERTY, 1));
+        }
+
+        final DataDigestSettings digestSettings = settings.build();
+        ExtractionPluginServerMain.runMain(() -> new DataDigestPlugin(digestSettings), args);
     }
 }
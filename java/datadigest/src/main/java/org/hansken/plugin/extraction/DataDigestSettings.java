@@ -0,0 +1,293 @@
+package org.hansken.plugin.extraction;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The settings of the {@link DataDigestPlugin}. The defaults calculate only a SHA-256 digest.
+ */
+public final class DataDigestSettings {
+
+    private final Set<DigestAlgorithm> _algorithms;
+    private final int _chunkSize;
+    private final int _bufferCount;
+    private final Path _cacheFile;
+    private final int _cacheEntries;
+    private final long _cacheMinimumSize;
+    private final boolean _verifyCache;
+    private final Path _checkpointDirectory;
+    private final long _checkpointInterval;
+    private final long _checkpointMinimumSize;
+    private final long _segmentSize;
+    private final int _segmentThreads;
+
+    private DataDigestSettings(final Builder builder) {
+        _algorithms = EnumSet.copyOf(builder._algorithms);
+        _chunkSize = builder._chunkSize;
+        _bufferCount = builder._bufferCount;
+        _cacheFile = builder._cacheFile;
+        _cacheEntries = builder._cacheEntries;
+        _cacheMinimumSize = builder._cacheMinimumSize;
+        _verifyCache = builder._verifyCache;
+        _checkpointDirectory = builder._checkpointDirectory;
+        _checkpointInterval = builder._checkpointInterval;
+        _checkpointMinimumSize = builder._checkpointMinimumSize;
+        _segmentSize = builder._segmentSize;
+        _segmentThreads = builder._segmentThreads;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the digests to calculate, in the order of {@link DigestAlgorithm}
+     */
+    public Set<DigestAlgorithm> getAlgorithms() {
+        return _algorithms;
+    }
+
+    /**
+     * @return the number of bytes which are read and hashed at once
+     */
+    public int getChunkSize() {
+        return _chunkSize;
+    }
+
+    /**
+     * @return the number of chunk buffers shared by the reader and the hashers when calculating multiple digests
+     */
+    public int getBufferCount() {
+        return _bufferCount;
+    }
+
+    /**
+     * @return the file of the digest cache, or {@code null} if no digests are cached
+     */
+    public Path getCacheFile() {
+        return _cacheFile;
+    }
+
+    /**
+     * @return the maximum number of digests in the digest cache
+     */
+    public int getCacheEntries() {
+        return _cacheEntries;
+    }
+
+    /**
+     * @return the minimum size of data of which the digests are cached
+     */
+    public long getCacheMinimumSize() {
+        return _cacheMinimumSize;
+    }
+
+    /**
+     * @return whether digests found in the cache are still calculated, to verify the cached digests
+     */
+    public boolean isVerifyCache() {
+        return _verifyCache;
+    }
+
+    /**
+     * @return the directory the progress of hashing large data is saved in, or {@code null} if it is not saved
+     */
+    public Path getCheckpointDirectory() {
+        return _checkpointDirectory;
+    }
+
+    /**
+     * @return the number of bytes hashed between two checkpoints
+     */
+    public long getCheckpointInterval() {
+        return _checkpointInterval;
+    }
+
+    /**
+     * @return the minimum size of data of which checkpoints are saved
+     */
+    public long getCheckpointMinimumSize() {
+        return _checkpointMinimumSize;
+    }
+
+    /**
+     * @return the size of the segments of which the SHA-256 digests are stored as a hash list, or 0 if no hash list
+     *         is stored
+     */
+    public long getSegmentSize() {
+        return _segmentSize;
+    }
+
+    /**
+     * @return the number of threads hashing the segments
+     */
+    public int getSegmentThreads() {
+        return _segmentThreads;
+    }
+
+    public static final class Builder {
+        private Set<DigestAlgorithm> _algorithms = EnumSet.of(DigestAlgorithm.SHA256);
+        private int _chunkSize = 1024 * 1024; // 1 MiB
+        private int _bufferCount = 4;
+        private Path _cacheFile;
+        private int _cacheEntries = 64 * 1024;
+        private long _cacheMinimumSize = 16 * 1024 * 1024; // 16 MiB
+        private boolean _verifyCache;
+        private Path _checkpointDirectory;
+        private long _checkpointInterval = 1024L * 1024 * 1024; // 1 GiB
+        private long _checkpointMinimumSize = 64L * 1024 * 1024 * 1024; // 64 GiB
+        private long _segmentSize;
+        private int _segmentThreads = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the digests to calculate. When more than one digest is calculated, the data is still read once, and
+         * each digest is calculated on a thread of its own.
+         *
+         * @param first the first digest to calculate
+         * @param others the other digests to calculate
+         * @return this builder
+         */
+        public Builder algorithms(final DigestAlgorithm first, final DigestAlgorithm... others) {
+            _algorithms = EnumSet.of(first, others);
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes which are read and hashed at once. Every thread processing traces keeps a buffer
+         * of this size, which is reused for all chunks of all traces it processes.
+         *
+         * @param chunkSize the chunk size in bytes, at least 1
+         * @return this builder
+         */
+        public Builder chunkSize(final int chunkSize) {
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("chunkSize must be at least 1: " + chunkSize);
+            }
+            _chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of chunk buffers which are reused when calculating multiple digests, which is the number of
+         * chunks the reader can be ahead of the slowest hasher.
+         *
+         * @param bufferCount the number of buffers, at least 1
+         * @return this builder
+         */
+        public Builder bufferCount(final int bufferCount) {
+            if (bufferCount < 1) {
+                throw new IllegalArgumentException("bufferCount must be at least 1: " + bufferCount);
+            }
+            _bufferCount = bufferCount;
+            return this;
+        }
+
+        /**
+         * Enables the digest cache. The digests of data which was seen before are then taken from the cache instead
+         * of calculated again. Data is looked up by its size and a hash of its first, middle and last chunk, so only
+         * those three chunks are read on a hit. Other data with the same size and the same three chunks gets the
+         * cached digests as well, unless the cache is {@link #verifyCache(boolean) verified}.
+         *
+         * @param cacheFile the file to keep the cache in, which is created when it does not exist
+         * @param cacheEntries the maximum number of digests in the cache, the least recently used are evicted
+         * @return this builder
+         */
+        public Builder cache(final Path cacheFile, final int cacheEntries) {
+            if (cacheEntries < 1) {
+                throw new IllegalArgumentException("cacheEntries must be at least 1: " + cacheEntries);
+            }
+            _cacheFile = cacheFile;
+            _cacheEntries = cacheEntries;
+            return this;
+        }
+
+        /**
+         * Sets the minimum size of data of which the digests are cached. The digests of smaller data are cheap
+         * enough to calculate every time. Data of three chunks or less is never cached.
+         *
+         * @param cacheMinimumSize the minimum size in bytes
+         * @return this builder
+         */
+        public Builder cacheMinimumSize(final long cacheMinimumSize) {
+            _cacheMinimumSize = cacheMinimumSize;
+            return this;
+        }
+
+        /**
+         * Sets whether digests found in the cache are still calculated, reading all data. A cached digest which
+         * differs from the calculated digest is logged and replaced. Off by default: the size and fingerprint of the
+         * data are trusted to identify it.
+         *
+         * @param verifyCache whether to verify cached digests
+         * @return this builder
+         */
+        public Builder verifyCache(final boolean verifyCache) {
+            _verifyCache = verifyCache;
+            return this;
+        }
+
+        /**
+         * Enables checkpoints: while hashing data of at least the {@link #checkpointMinimumSize(long) minimum size},
+         * the progress is saved after every interval. When the plugin is stopped before a digest is complete, hashing
+         * the same data stream (the same trace id, data type and size) again continues from the last checkpoint, after
+         * checking the chunk hashed last before the checkpoint is the same. Checkpoints are only saved when
+         * calculating just a SHA-256 digest, which is then calculated by {@link Sha256}: slower than a
+         * {@link java.security.MessageDigest}, but its progress can be saved.
+         *
+         * @param checkpointDirectory the (existing) directory to save the checkpoints in
+         * @param checkpointInterval the number of bytes hashed between two checkpoints
+         * @return this builder
+         */
+        public Builder checkpoints(final Path checkpointDirectory, final long checkpointInterval) {
+            if (checkpointInterval < 1) {
+                throw new IllegalArgumentException("checkpointInterval must be at least 1: " + checkpointInterval);
+            }
+            _checkpointDirectory = checkpointDirectory;
+            _checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        /**
+         * Sets the minimum size of data of which checkpoints are saved. Smaller data is hashed by the faster
+         * {@link java.security.MessageDigest}, which is cheaper than saving its progress even when it has to be
+         * hashed again.
+         *
+         * @param checkpointMinimumSize the minimum size in bytes
+         * @return this builder
+         */
+        public Builder checkpointMinimumSize(final long checkpointMinimumSize) {
+            _checkpointMinimumSize = checkpointMinimumSize;
+            return this;
+        }
+
+        /**
+         * Enables segment hashes: besides the digests of the data, the SHA-256 digest of every segment of the data
+         * is calculated, and stored as a hash list in a data stream of type {@code <type>-sha256-segments}. With
+         * more than one thread, every thread hashes every n-th segment and only receives the chunks of those
+         * segments, so threads only run in parallel when the {@link #bufferCount(int) chunk buffers} span more than
+         * one segment. The data is read once, and the digest cache and checkpoints are not used when calculating
+         * segment hashes.
+         *
+         * @param segmentSize the size of a segment in bytes
+         * @param segmentThreads the number of threads hashing the segments
+         * @return this builder
+         */
+        public Builder segmentHashes(final long segmentSize, final int segmentThreads) {
+            if (segmentSize < 1 || segmentThreads < 1) {
+                throw new IllegalArgumentException("segmentSize and segmentThreads must be at least 1: "
+                    + segmentSize + ", " + segmentThreads);
+            }
+            _segmentSize = segmentSize;
+            _segmentThreads = segmentThreads;
+            return this;
+        }
+
+        public DataDigestSettings build() {
+            return new DataDigestSettings(this);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * A cheap identification of data: a hash of its size and of its first, middle and last chunk. Data with the same
+ * fingerprint is very likely, but not guaranteed, to be the same data.
+ */
+final class DataFingerprint {
+
+    static final int LENGTH = 16;
+
+    private DataFingerprint() {
+    }
+
+    /**
+     * Calculates the fingerprint of data of at least three chunks. Afterwards, the data is positioned at its start.
+     *
+     * @param data the data to calculate the fingerprint of
+     * @param buffer a buffer of at least {@code chunkSize} bytes
+     * @param chunkSize the size of the chunks which are hashed
+     * @return the fingerprint, {@link #LENGTH} bytes
+     * @throws IOException when the data could not be read
+     */
+    static byte[] of(final RandomAccessData data, final byte[] buffer, final int chunkSize) throws IOException {
+        final long size = data.size();
+        final MessageDigest digest = DigestAlgorithm.SHA256.newMessageDigest();
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+        for (final long position : new long[] {0, (size - chunkSize) / 2, size - chunkSize}) {
+            data.seek(position);
+            if (data.read(buffer, chunkSize) != chunkSize) {
+                throw new IOException("could not read chunk at position " + position);
+            }
+            digest.update(buffer, 0, chunkSize);
+        }
+        data.seek(0);
+        return Arrays.copyOf(digest.digest(), LENGTH);
+    }
+}
@@ -0,0 +1,53 @@
+package org.hansken.plugin.extraction;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The digest algorithms supported by the {@link DataDigestPlugin}.
+ */
+public enum DigestAlgorithm {
+    MD5("MD5", "md5"),
+    SHA1("SHA-1", "sha1"),
+    SHA256("SHA-256", "sha256");
+
+    private final String _algorithm;
+    private final String _property;
+
+    DigestAlgorithm(final String algorithm, final String property) {
+        _algorithm = algorithm;
+        _property = property;
+    }
+
+    /**
+     * @return the name of the property the digest is stored in, as in {@code data.<type>.hash.<name>}
+     */
+    public String propertyName() {
+        return _property;
+    }
+
+    /**
+     * Finds an algorithm by the name of its property.
+     *
+     * @param propertyName the name of the property, for example 'sha1'
+     * @return the algorithm
+     * @throws IllegalArgumentException when there is no algorithm with the given property name
+     */
+    public static DigestAlgorithm forPropertyName(final String propertyName) {
+        for (final DigestAlgorithm algorithm : values()) {
+            if (algorithm._property.equals(propertyName)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("unknown digest algorithm: " + propertyName);
+    }
+
+    MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(_algorithm);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Invalid algorithm", e);
+        }
+    }
+}
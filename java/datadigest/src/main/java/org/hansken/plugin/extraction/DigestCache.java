@@ -0,0 +1,220 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of digests, stored in a memory mapped file so it is kept between runs. Digests are looked up by
+ * the size and the {@link DataFingerprint fingerprint} of the data they were calculated of, together with their
+ * algorithm. The data itself is not read to look up a digest, so different data which happens to have the same size
+ * and fingerprint gets the digests of the other data; only verifying the cached digests rules that out.
+ * <p>
+ * The file contains a fixed number of entries, divided in sets of {@link #WAYS} entries. The set of a key is
+ * determined by its fingerprint; when a set is full, its least recently used entry is replaced. The cache can be
+ * shared by the threads of one process, see {@link #shared(Path, int)}, but not by multiple processes.
+ */
+final class DigestCache {
+
+    static final int WAYS = 8;
+
+    private static final int MAGIC = 0x44474333; // DGC3
+
+    // header: magic (4), number of sets (4), clock (8)
+    private static final int HEADER_SIZE = 16;
+    private static final int CLOCK_OFFSET = 8;
+
+    // entry: data size (8), fingerprint (16), last used (8), algorithm (1), digest length (1), padding (6),
+    // digest (32)
+    private static final int ENTRY_SIZE = 72;
+    private static final int SIZE_OFFSET = 0;
+    private static final int FINGERPRINT_OFFSET = 8;
+    private static final int LAST_USED_OFFSET = 24;
+    private static final int ALGORITHM_OFFSET = 32;
+    private static final int DIGEST_LENGTH_OFFSET = 33;
+    private static final int DIGEST_OFFSET = 40;
+    private static final int MAX_DIGEST_LENGTH = 32;
+
+    // the caches opened by this process, by their file
+    private static final Map<Path, DigestCache> SHARED = new HashMap<>();
+
+    private final MappedByteBuffer _buffer;
+    private final int _sets;
+    private long _clock;
+
+    private long _lookups;
+    private long _hits;
+
+    private DigestCache(final MappedByteBuffer buffer, final int sets) {
+        _buffer = buffer;
+        _sets = sets;
+        _clock = buffer.getLong(CLOCK_OFFSET);
+    }
+
+    /**
+     * Opens the cache in the given file once per process: the plugin may be created more than once, and every
+     * instance should use the same cache. The number of entries of the first call is used.
+     *
+     * @param file the file containing the cache
+     * @param entries the maximum number of digests in the cache, rounded up to a multiple of {@link #WAYS}
+     * @return the cache
+     * @throws IOException when the file could not be opened
+     */
+    static DigestCache shared(final Path file, final int entries) throws IOException {
+        synchronized (SHARED) {
+            final Path key = file.toAbsolutePath().normalize();
+            DigestCache cache = SHARED.get(key);
+            if (cache == null) {
+                cache = open(file, entries);
+                SHARED.put(key, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Opens the cache in the given file, or creates it when the file does not exist yet. An existing file which was
+     * created for a different number of entries is cleared.
+     *
+     * @param file the file containing the cache
+     * @param entries the maximum number of digests in the cache, rounded up to a multiple of {@link #WAYS}
+     * @return the cache
+     * @throws IOException when the file could not be opened
+     */
+    static DigestCache open(final Path file, final int entries) throws IOException {
+        final int sets = Math.max(1, (entries + WAYS - 1) / WAYS);
+        final long size = HEADER_SIZE + (long) sets * WAYS * ENTRY_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many entries for a digest cache: " + entries);
+        }
+
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final boolean valid = channel.size() == size;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (!valid || buffer.getInt(0) != MAGIC || buffer.getInt(4) != sets) {
+                // a new file, or one of a different layout: start with an empty cache
+                for (int i = 0; i < size; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, sets);
+            }
+        }
+        return new DigestCache(buffer, sets);
+    }
+
+    /**
+     * Looks up a digest.
+     *
+     * @param size the size of the data
+     * @param fingerprint the fingerprint of the data
+     * @param algorithm the algorithm of the digest
+     * @return the digest, or {@code null} if it is not in the cache
+     */
+    synchronized byte[] get(final long size, final byte[] fingerprint, final DigestAlgorithm algorithm) {
+        _lookups++;
+        final int entry = find(size, fingerprint, algorithm);
+        if (entry < 0) {
+            return null;
+        }
+        _hits++;
+        _buffer.putLong(entry + LAST_USED_OFFSET, tick());
+
+        final byte[] digest = new byte[_buffer.get(entry + DIGEST_LENGTH_OFFSET)];
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = _buffer.get(entry + DIGEST_OFFSET + i);
+        }
+        return digest;
+    }
+
+    /**
+     * Adds a digest, replacing the digest cached for the same size and fingerprint, or else the least recently used
+     * digest of its set if the set is full.
+     *
+     * @param size the size of the data
+     * @param fingerprint the fingerprint of the data
+     * @param algorithm the algorithm of the digest
+     * @param digest the digest
+     */
+    synchronized void put(final long size, final byte[] fingerprint, final DigestAlgorithm algorithm,
+                          final byte[] digest) {
+        if (digest.length > MAX_DIGEST_LENGTH) {
+            throw new IllegalArgumentException("digest too long for the digest cache: " + digest.length);
+        }
+        int entry = find(size, fingerprint, algorithm);
+        if (entry < 0) {
+            entry = leastRecentlyUsed(fingerprint);
+            _buffer.putLong(entry + SIZE_OFFSET, size);
+            for (int i = 0; i < DataFingerprint.LENGTH; i++) {
+                _buffer.put(entry + FINGERPRINT_OFFSET + i, fingerprint[i]);
+            }
+            _buffer.put(entry + ALGORITHM_OFFSET, (byte) (algorithm.ordinal() + 1));
+        }
+        _buffer.put(entry + DIGEST_LENGTH_OFFSET, (byte) digest.length);
+        for (int i = 0; i < digest.length; i++) {
+            _buffer.put(entry + DIGEST_OFFSET + i, digest[i]);
+        }
+        _buffer.putLong(entry + LAST_USED_OFFSET, tick());
+    }
+
+    synchronized long lookups() {
+        return _lookups;
+    }
+
+    synchronized long hits() {
+        return _hits;
+    }
+
+    private int find(final long size, final byte[] fingerprint, final DigestAlgorithm algorithm) {
+        final int set = firstEntry(fingerprint);
+        for (int way = 0; way < WAYS; way++) {
+            final int entry = set + way * ENTRY_SIZE;
+            if (_buffer.get(entry + ALGORITHM_OFFSET) == algorithm.ordinal() + 1
+                && _buffer.getLong(entry + SIZE_OFFSET) == size
+                && fingerprintEquals(entry, fingerprint)) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    // an empty entry has never been used, so it is the least recently used one
+    private int leastRecentlyUsed(final byte[] fingerprint) {
+        final int set = firstEntry(fingerprint);
+        int oldest = set;
+        for (int way = 1; way < WAYS; way++) {
+            final int entry = set + way * ENTRY_SIZE;
+            if (_buffer.getLong(entry + LAST_USED_OFFSET) < _buffer.getLong(oldest + LAST_USED_OFFSET)) {
+                oldest = entry;
+            }
+        }
+        return oldest;
+    }
+
+    private int firstEntry(final byte[] fingerprint) {
+        final int hash = (fingerprint[0] & 0xff) | (fingerprint[1] & 0xff) << 8
+            | (fingerprint[2] & 0xff) << 16 | (fingerprint[3] & 0xff) << 24;
+        return HEADER_SIZE + Integer.remainderUnsigned(hash, _sets) * WAYS * ENTRY_SIZE;
+    }
+
+    private boolean fingerprintEquals(final int entry, final byte[] fingerprint) {
+        for (int i = 0; i < DataFingerprint.LENGTH; i++) {
+            if (_buffer.get(entry + FINGERPRINT_OFFSET + i) != fingerprint[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long tick() {
+        _clock++;
+        _buffer.putLong(CLOCK_OFFSET, _clock);
+        return _clock;
+    }
+}
@@ -0,0 +1,157 @@
+package org.hansken.plugin.extraction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the intermediate state of hashing large data in a directory, so hashing can be resumed after the plugin was
+ * stopped. There is one checkpoint file per data stream, named after a hash of the id of its trace and its data type.
+ * Next to the state of the digest, a checkpoint holds the size of the data and a check of the chunk hashed last: a
+ * trace id is not unique over images, so only a data stream of the same size of which that chunk is the same resumes
+ * from the checkpoint. Checking a single chunk keeps resuming cheap, it does not read the data before the checkpoint
+ * again.
+ * <p>
+ * A checkpoint is written to a temporary file first, which then replaces the previous checkpoint, so a checkpoint is
+ * never left half written.
+ */
+final class DigestCheckpoints {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DigestCheckpoints.class);
+
+    /**
+     * The length of the check of the chunk hashed last: the length of the chunk and its SHA-256 digest.
+     */
+    static final int LAST_CHUNK_LENGTH = Integer.BYTES + 32;
+
+    private static final int MAGIC = 0x44435033; // DCP3
+    private static final String EXTENSION = ".checkpoint";
+
+    private final Path _directory;
+
+    DigestCheckpoints(final Path directory) {
+        _directory = directory;
+    }
+
+    /**
+     * The progress of hashing a data stream.
+     */
+    static final class Checkpoint {
+        private final Sha256 _digest;
+        private final byte[] _lastChunk;
+
+        Checkpoint(final Sha256 digest, final byte[] lastChunk) {
+            _digest = digest;
+            _lastChunk = lastChunk;
+        }
+
+        /**
+         * @return the SHA-256 digest of the data up to the checkpoint
+         */
+        Sha256 digest() {
+            return _digest;
+        }
+
+        /**
+         * @return the check of the chunk hashed last before the checkpoint, {@link #LAST_CHUNK_LENGTH} bytes
+         */
+        byte[] lastChunk() {
+            return _lastChunk;
+        }
+    }
+
+    /**
+     * Loads the last checkpoint of a data stream.
+     *
+     * @param identity the identity of the data stream: its trace id and data type
+     * @param size the size of the data
+     * @return the checkpoint, or {@code null} if there is no (valid) checkpoint
+     * @throws IOException when the checkpoint could not be read
+     */
+    Checkpoint load(final String identity, final long size) throws IOException {
+        final Path file = file(identity);
+        final ByteBuffer checkpoint;
+        try {
+            checkpoint = ByteBuffer.wrap(Files.readAllBytes(file));
+        }
+        catch (final NoSuchFileException e) {
+            return null;
+        }
+
+        try {
+            if (checkpoint.getInt() != MAGIC || checkpoint.getLong() != size) {
+                throw new IllegalArgumentException("not a checkpoint of this data");
+            }
+            final byte[] lastChunk = new byte[LAST_CHUNK_LENGTH];
+            checkpoint.get(lastChunk);
+            final byte[] state = new byte[checkpoint.remaining()];
+            checkpoint.get(state);
+            final Sha256 digest = Sha256.importState(state);
+            if (digest.length() > size) {
+                throw new IllegalArgumentException("checkpoint beyond the end of the data");
+            }
+            return new Checkpoint(digest, lastChunk);
+        }
+        catch (final RuntimeException e) {
+            // an invalid checkpoint only costs the time to hash the data from the start
+            LOG.warn("Ignoring invalid digest checkpoint {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves a checkpoint of a data stream, replacing its previous checkpoint.
+     *
+     * @param identity the identity of the data stream: its trace id and data type
+     * @param size the size of the data
+     * @param lastChunk the check of the chunk hashed last, {@link #LAST_CHUNK_LENGTH} bytes
+     * @param digest the digest of the data hashed so far
+     * @throws IOException when the checkpoint could not be written
+     */
+    void save(final String identity, final long size, final byte[] lastChunk, final Sha256 digest) throws IOException {
+        final byte[] state = digest.exportState();
+        final ByteBuffer checkpoint = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + LAST_CHUNK_LENGTH + state.length)
+            .putInt(MAGIC)
+            .putLong(size)
+            .put(lastChunk)
+            .put(state);
+
+        final Path file = file(identity);
+        final Path temporary = Files.createTempFile(_directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, checkpoint.array());
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Removes the checkpoint of a data stream which is completely hashed.
+     *
+     * @param identity the identity of the data stream: its trace id and data type
+     * @throws IOException when the checkpoint could not be removed
+     */
+    void delete(final String identity) throws IOException {
+        Files.deleteIfExists(file(identity));
+    }
+
+    // trace ids and data types may contain characters which are not allowed in a file name, so their hash is used
+    private Path file(final String identity) {
+        final byte[] hash = DigestAlgorithm.SHA256.newMessageDigest().digest(identity.getBytes(UTF_8));
+        final StringBuilder name = new StringBuilder();
+        for (final byte b : hash) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return _directory.resolve(name.append(EXTENSION).toString());
+    }
+}
@@ -0,0 +1,228 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Feeds chunks of data to multiple {@link MessageDigest}s, or other {@link ChunkConsumer}s, concurrently. A single
+ * reader {@link #acquire() acquires} a free chunk from a ring of reused buffers, fills it and
+ * {@link #submit(Chunk) submits} it. Every consumer runs on a hasher thread of its own and receives the chunks it
+ * {@link ChunkConsumer#accepts(long, int) accepts} in order, and a chunk returns to the ring when all hashers are
+ * done with it. The data is therefore read once, however many digests are calculated, and the memory used is bounded
+ * by the number of buffers.
+ * <p>
+ * The hashers run on a {@link #newHasherPool() pool} which is shared by the pipelines of all traces.
+ */
+final class DigestPipeline implements AutoCloseable {
+
+    // tells a hasher there are no more chunks
+    private static final Chunk END = new Chunk(0);
+
+    /**
+     * Processes the chunks of data, in the order of the data.
+     */
+    @FunctionalInterface
+    interface ChunkConsumer {
+        /**
+         * @param bytes the buffer containing the chunk
+         * @param position the position of the chunk in the data
+         * @param length the number of bytes in the chunk
+         */
+        void accept(byte[] bytes, long position, int length);
+
+        /**
+         * @param position the position of a chunk in the data
+         * @param length the number of bytes in the chunk
+         * @return whether this consumer processes the chunk, by default all chunks
+         */
+        default boolean accepts(final long position, final int length) {
+            return true;
+        }
+    }
+
+    private final List<ChunkConsumer> _consumers;
+    private final BlockingQueue<Chunk> _free;
+    private final List<BlockingQueue<Chunk>> _queues = new ArrayList<>();
+    private final List<Future<?>> _hashers = new ArrayList<>();
+
+    /**
+     * Starts a hasher for each of the given consumers.
+     *
+     * @param executor the pool to run the hashers on, see {@link #newHasherPool()}
+     * @param consumers the consumers of the chunks, such as {@link #updating(MessageDigest) digest updates}
+     * @param chunkSize the size of a chunk buffer
+     * @param bufferCount the number of chunk buffers
+     */
+    DigestPipeline(final ExecutorService executor, final List<ChunkConsumer> consumers, final int chunkSize,
+                   final int bufferCount) {
+        _consumers = consumers;
+        _free = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            _free.add(new Chunk(chunkSize));
+        }
+        for (final ChunkConsumer consumer : consumers) {
+            final BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+            _queues.add(queue);
+            _hashers.add(executor.submit(() -> hash(consumer, queue)));
+        }
+    }
+
+    /**
+     * Creates a pool of daemon threads to run the hashers of pipelines on, the plugin has no life cycle to shut it down
+     * at. A hasher waits for the chunks of its pipeline until the pipeline is finished, so the pool is not bounded:
+     * with a fixed number of threads, the hashers of one pipeline could wait for a thread held by the hashers of
+     * another. Idle threads are reused by the next pipelines.
+     *
+     * @return the pool
+     */
+    static ExecutorService newHasherPool() {
+        return Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "digest-hasher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param digest the digest to update
+     * @return a consumer which updates the digest with every chunk
+     */
+    static ChunkConsumer updating(final MessageDigest digest) {
+        return (bytes, position, length) -> digest.update(bytes, 0, length);
+    }
+
+    /**
+     * Waits for a free chunk buffer.
+     *
+     * @return the chunk to fill
+     * @throws InterruptedIOException when interrupted while waiting
+     */
+    Chunk acquire() throws InterruptedIOException {
+        try {
+            return _free.take();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a chunk buffer");
+        }
+    }
+
+    /**
+     * Hands a filled chunk to the hashers of the consumers which accept it.
+     *
+     * @param chunk the chunk, of which {@link Chunk#set(long, int)} has been called
+     */
+    void submit(final Chunk chunk) {
+        int pending = 0;
+        for (final ChunkConsumer consumer : _consumers) {
+            if (consumer.accepts(chunk._position, chunk._length)) {
+                pending++;
+            }
+        }
+        if (pending == 0) {
+            _free.add(chunk);
+            return;
+        }
+
+        chunk._pending.set(pending);
+        for (int i = 0; i < _queues.size(); i++) {
+            if (_consumers.get(i).accepts(chunk._position, chunk._length)) {
+                _queues.get(i).add(chunk);
+            }
+        }
+    }
+
+    /**
+     * Waits until all submitted chunks are hashed, after which the digests can be completed.
+     *
+     * @throws IOException when a digest could not be updated, or when interrupted while waiting
+     */
+    void finish() throws IOException {
+        for (final BlockingQueue<Chunk> queue : _queues) {
+            queue.add(END);
+        }
+        for (final Future<?> hasher : _hashers) {
+            try {
+                hasher.get();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while calculating digests");
+            }
+            catch (final ExecutionException e) {
+                throw new IOException("failed to calculate digest", e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // hashers still waiting for chunks after a failure are not needed anymore
+        for (final Future<?> hasher : _hashers) {
+            hasher.cancel(true);
+        }
+    }
+
+    private Void hash(final ChunkConsumer consumer, final BlockingQueue<Chunk> queue) throws InterruptedException {
+        RuntimeException failure = null;
+        for (Chunk chunk = queue.take(); chunk != END; chunk = queue.take()) {
+            try {
+                if (failure == null) {
+                    consumer.accept(chunk._bytes, chunk._position, chunk._length);
+                }
+            }
+            catch (final RuntimeException e) {
+                // keep releasing chunks, so the reader is not blocked waiting for a free buffer
+                failure = e;
+            }
+            finally {
+                if (chunk._pending.decrementAndGet() == 0) {
+                    _free.add(chunk);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    /**
+     * A reusable buffer holding a chunk of data.
+     */
+    static final class Chunk {
+        private final byte[] _bytes;
+        // the number of hashers which still have to process this chunk
+        private final AtomicInteger _pending = new AtomicInteger();
+        private long _position;
+        private int _length;
+
+        private Chunk(final int size) {
+            _bytes = new byte[size];
+        }
+
+        byte[] bytes() {
+            return _bytes;
+        }
+
+        /**
+         * @param position the position of the chunk in the data
+         * @param length the number of bytes in the chunk
+         */
+        void set(final long position, final int length) {
+            _position = position;
+            _length = length;
+        }
+    }
+}
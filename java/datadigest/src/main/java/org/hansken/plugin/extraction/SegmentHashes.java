@@ -0,0 +1,110 @@
+package org.hansken.plugin.extraction;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SHA-256 digests of the fixed size segments of data: a hash list, which allows a range of the data to be
+ * verified or compared without reading all of it. The last segment can be smaller than the segment size.
+ * <p>
+ * The segments are hashed by one or more {@link DigestPipeline.ChunkConsumer lanes}, each with a digest of its own and
+ * responsible for every n-th segment. A lane only accepts the chunks of its own segments, so lanes hash different
+ * segments in parallel when the chunks read ahead span more than one segment: when the segment size is not much
+ * larger than the chunk size times the number of chunk buffers.
+ */
+final class SegmentHashes {
+
+    private static final int MAGIC = 0x53484c31; // SHL1
+
+    private final long _dataSize;
+    private final long _segmentSize;
+    // the digest of each segment, written by the lane responsible for it
+    private final byte[][] _digests;
+
+    SegmentHashes(final long dataSize, final long segmentSize) {
+        final long segments = (dataSize + segmentSize - 1) / segmentSize;
+        if (segments > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many segments of " + segmentSize + " bytes: " + segments);
+        }
+        _dataSize = dataSize;
+        _segmentSize = segmentSize;
+        _digests = new byte[(int) segments][];
+    }
+
+    /**
+     * Creates the lanes hashing the segments. Every lane has to receive the chunks it accepts, in order.
+     *
+     * @param lanes the number of lanes
+     * @return the lanes
+     */
+    List<DigestPipeline.ChunkConsumer> lanes(final int lanes) {
+        final List<DigestPipeline.ChunkConsumer> consumers = new ArrayList<>(lanes);
+        for (int lane = 0; lane < lanes; lane++) {
+            consumers.add(new Lane(lane, lanes));
+        }
+        return consumers;
+    }
+
+    /**
+     * Writes the hash list: a header of a magic number, the segment size and the data size, followed by the 32 byte
+     * digest of every segment. All numbers are big endian.
+     *
+     * @param output the stream to write to
+     * @throws IOException when the hash list could not be written
+     */
+    void write(final OutputStream output) throws IOException {
+        final DataOutputStream stream = new DataOutputStream(output);
+        stream.writeInt(MAGIC);
+        stream.writeLong(_segmentSize);
+        stream.writeLong(_dataSize);
+        for (final byte[] digest : _digests) {
+            stream.write(digest);
+        }
+        stream.flush();
+    }
+
+    /**
+     * Hashes every n-th segment.
+     */
+    private final class Lane implements DigestPipeline.ChunkConsumer {
+        private final int _lane;
+        private final int _lanes;
+        private final MessageDigest _digest = DigestAlgorithm.SHA256.newMessageDigest();
+
+        Lane(final int lane, final int lanes) {
+            _lane = lane;
+            _lanes = lanes;
+        }
+
+        @Override
+        public boolean accepts(final long position, final int length) {
+            final long first = position / _segmentSize;
+            final long last = (position + length - 1) / _segmentSize;
+            // whether a segment of this lane lies between the first and last segment of the chunk
+            return last - first + 1 >= _lanes || Math.floorMod(_lane - first, _lanes) <= last - first;
+        }
+
+        @Override
+        public void accept(final byte[] bytes, final long position, final int length) {
+            final long end = position + length;
+            // visit the (parts of) segments in this chunk, only hashing those of this lane
+            for (long segment = position / _segmentSize; segment * _segmentSize < end; segment++) {
+                if (segment % _lanes != _lane) {
+                    continue;
+                }
+                final long segmentStart = segment * _segmentSize;
+                final long segmentEnd = Math.min(segmentStart + _segmentSize, _dataSize);
+                final long from = Math.max(segmentStart, position);
+                final long to = Math.min(segmentEnd, end);
+                _digest.update(bytes, (int) (from - position), (int) (to - from));
+                if (to == segmentEnd) {
+                    _digests[(int) segment] = _digest.digest();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.hansken.plugin.extraction;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A SHA-256 implementation of which the intermediate state can be exported and imported again, which
+ * {@link java.security.MessageDigest} does not allow. It is used to save the progress of hashing large data, see
+ * {@link DigestCheckpoints}; otherwise the (faster) {@link java.security.MessageDigest} is used.
+ * <p>
+ * This implementation is about as fast as the JDK's own SHA-256 code, but the JDK replaces that code by the SHA
+ * instructions of the CPU when there are any, which makes a {@link java.security.MessageDigest} several times faster.
+ * {@code Sha256Benchmark} measures both.
+ */
+final class Sha256 {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private static final int[] INITIAL_STATE = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private final int[] _state;
+    private final int[] _words = new int[64];
+    // the bytes of an incomplete block
+    private final byte[] _block = new byte[BLOCK_SIZE];
+    private int _blockLength;
+    // the total number of bytes hashed
+    private long _length;
+
+    Sha256() {
+        _state = INITIAL_STATE.clone();
+    }
+
+    private Sha256(final int[] state, final long length, final byte[] block, final int blockLength) {
+        _state = state;
+        _length = length;
+        System.arraycopy(block, 0, _block, 0, blockLength);
+        _blockLength = blockLength;
+    }
+
+    void update(final byte[] bytes, final int offset, final int length) {
+        int position = offset;
+        final int end = offset + length;
+        _length += length;
+
+        // complete a block started by an earlier update
+        if (_blockLength > 0) {
+            final int count = Math.min(BLOCK_SIZE - _blockLength, length);
+            System.arraycopy(bytes, position, _block, _blockLength, count);
+            _blockLength += count;
+            position += count;
+            if (_blockLength < BLOCK_SIZE) {
+                return;
+            }
+            compress(_block, 0);
+            _blockLength = 0;
+        }
+
+        while (end - position >= BLOCK_SIZE) {
+            compress(bytes, position);
+            position += BLOCK_SIZE;
+        }
+
+        System.arraycopy(bytes, position, _block, 0, end - position);
+        _blockLength = end - position;
+    }
+
+    /**
+     * Completes the digest. This instance can not be used anymore afterwards.
+     *
+     * @return the digest, 32 bytes
+     */
+    byte[] digest() {
+        final long bits = _length * 8;
+        final byte[] padding = new byte[(_blockLength < 56 ? 64 : 128) - _blockLength];
+        padding[0] = (byte) 0x80;
+        ByteBuffer.wrap(padding).putLong(padding.length - Long.BYTES, bits);
+        update(padding, 0, padding.length);
+
+        final ByteBuffer digest = ByteBuffer.allocate(32);
+        for (final int word : _state) {
+            digest.putInt(word);
+        }
+        return digest.array();
+    }
+
+    /**
+     * @return the number of bytes hashed so far
+     */
+    long length() {
+        return _length;
+    }
+
+    /**
+     * @return the intermediate state, from which hashing can be continued with {@link #importState(byte[])}
+     */
+    byte[] exportState() {
+        final ByteBuffer state = ByteBuffer.allocate(_state.length * Integer.BYTES + Long.BYTES + Integer.BYTES + _blockLength);
+        for (final int word : _state) {
+            state.putInt(word);
+        }
+        state.putLong(_length);
+        state.putInt(_blockLength);
+        state.put(_block, 0, _blockLength);
+        return state.array();
+    }
+
+    /**
+     * Continues hashing from an intermediate state.
+     *
+     * @param exported the state, as returned by {@link #exportState()}
+     * @return the digest in the given state
+     * @throws IllegalArgumentException when the state is not valid
+     */
+    static Sha256 importState(final byte[] exported) {
+        final ByteBuffer state = ByteBuffer.wrap(exported);
+        final int[] words = new int[INITIAL_STATE.length];
+        if (exported.length < words.length * Integer.BYTES + Long.BYTES + Integer.BYTES) {
+            throw new IllegalArgumentException("invalid SHA-256 state");
+        }
+        for (int i = 0; i < words.length; i++) {
+            words[i] = state.getInt();
+        }
+        final long length = state.getLong();
+        final int blockLength = state.getInt();
+        if (blockLength != state.remaining() || blockLength >= BLOCK_SIZE || length < 0 || length % BLOCK_SIZE != blockLength) {
+            throw new IllegalArgumentException("invalid SHA-256 state");
+        }
+        final byte[] block = new byte[blockLength];
+        state.get(block);
+        return new Sha256(words, length, block, blockLength);
+    }
+
+    private void compress(final byte[] bytes, final int offset) {
+        final int[] w = _words;
+        for (int i = 0; i < 16; i++) {
+            final int index = offset + 4 * i;
+            w[i] = (bytes[index] & 0xff) << 24 | (bytes[index + 1] & 0xff) << 16
+                | (bytes[index + 2] & 0xff) << 8 | (bytes[index + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            final int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+            final int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+
+        int a = _state[0];
+        int b = _state[1];
+        int c = _state[2];
+        int d = _state[3];
+        int e = _state[4];
+        int f = _state[5];
+        int g = _state[6];
+        int h = _state[7];
+        for (int i = 0; i < 64; i++) {
+            final int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            final int ch = (e & f) ^ (~e & g);
+            final int t1 = h + s1 + ch + K[i] + w[i];
+            final int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            final int maj = (a & b) ^ (a & c) ^ (b & c);
+            final int t2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        _state[0] += a;
+        _state[1] += b;
+        _state[2] += c;
+        _state[3] += d;
+        _state[4] += e;
+        _state[5] += f;
+        _state[6] += g;
+        _state[7] += h;
+    }
+}
@@ -0,0 +1,87 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the chunk loop of the {@link DataDigestPlugin}, which reuses one buffer per thread, to the loop it
+ * replaced, which allocated every chunk with {@code readNBytes}. Both hash 64 MiB of data with SHA-256.
+ * <p>
+ * The {@code megabytes} counter gives the throughput in MB/s. Run with {@code -prof gc} to also see the allocation
+ * per hashed 64 MiB in {@code gc.alloc.rate.norm}, for example
+ * {@code mvn -Pbenchmark test -Dbenchmark=ChunkLoop -Dbenchmark.args="-prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkLoopBenchmark {
+
+    private static final int DATA_SIZE = 64 * 1024 * 1024;
+
+    // the chunk size in bytes, a JMH parameter (-p chunkSize=...), so without the usual field prefix
+    @Param({"65536", "1048576"})
+    public int chunkSize;
+
+    private ByteArrayData _data;
+    private DataDigestPlugin _plugin;
+
+    /**
+     * Counts the hashed megabytes, which JMH reports per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final byte[] bytes = new byte[DATA_SIZE];
+        new Random(42).nextBytes(bytes);
+        _data = new ByteArrayData(bytes);
+        _plugin = new DataDigestPlugin(DataDigestSettings.builder().chunkSize(chunkSize).build());
+    }
+
+    @Benchmark
+    public byte[] reusedBuffer(final Throughput throughput) throws IOException {
+        final MessageDigest digest = DigestAlgorithm.SHA256.newMessageDigest();
+        _data.seek(0);
+        _plugin.digest(_data, digest);
+        throughput.megabytes += DATA_SIZE / 1e6;
+        return digest.digest();
+    }
+
+    @Benchmark
+    public byte[] readNBytes(final Throughput throughput) throws IOException {
+        final MessageDigest digest = DigestAlgorithm.SHA256.newMessageDigest();
+        _data.seek(0);
+        // the loop as it was before the buffer was reused: a new array for every chunk
+        final long totalChunks = (DATA_SIZE + chunkSize - 1) / chunkSize;
+        for (long currentChunk = 0; currentChunk < totalChunks; currentChunk++) {
+            final long position = currentChunk * chunkSize;
+            final int length = (int) Math.min(chunkSize, DATA_SIZE - position);
+            digest.update(_data.readNBytes(length));
+        }
+        throughput.megabytes += DATA_SIZE / 1e6;
+        return digest.digest();
+    }
+}
@@ -0,0 +1,170 @@
+package org.hansken.plugin.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Calculates digests with the digest cache enabled, using small chunks so small data has a fingerprint as well.
+ */
+class DataDigestPluginCacheTest {
+
+    private static final int CHUNK_SIZE = 16;
+    private static final String IDENTITY = "0-1/raw";
+    private static final List<DigestAlgorithm> ALGORITHMS = List.of(DigestAlgorithm.MD5, DigestAlgorithm.SHA256);
+
+    @Test
+    void missThenHit(@TempDir final Path directory) throws IOException {
+        final Path cacheFile = directory.resolve("cache");
+        final byte[] bytes = randomBytes(1000, 1);
+
+        assertDigests(bytes, plugin(cacheFile, false).digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS));
+        final DigestCache cache = DigestCache.shared(cacheFile, 64);
+        assertEquals(0, cache.hits());
+
+        // a new plugin instance of the same process finds the digests calculated by the first
+        assertDigests(bytes, plugin(cacheFile, false).digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS));
+        assertEquals(2, cache.hits());
+    }
+
+    @Test
+    void sameFingerprintOtherData(@TempDir final Path directory) throws IOException {
+        final Path cacheFile = directory.resolve("cache");
+        final byte[] first = randomBytes(1000, 1);
+        // the same size, first, middle and last chunk, so the same fingerprint, but not the same data
+        final byte[] second = first.clone();
+        second[100]++;
+        assertArrayEquals(DataFingerprint.of(new ByteArrayData(first), new byte[CHUNK_SIZE], CHUNK_SIZE),
+            DataFingerprint.of(new ByteArrayData(second), new byte[CHUNK_SIZE], CHUNK_SIZE));
+
+        // the fingerprint is trusted, so the second data gets the digests of the first
+        assertDigests(first, plugin(cacheFile, false).digests(new ByteArrayData(first), IDENTITY, ALGORITHMS));
+        assertDigests(first, plugin(cacheFile, false).digests(new ByteArrayData(second), IDENTITY, ALGORITHMS));
+
+        // unless the cache is verified, which calculates and caches the digests of the second data
+        assertDigests(second, plugin(cacheFile, true).digests(new ByteArrayData(second), IDENTITY, ALGORITHMS));
+        assertDigests(second, plugin(cacheFile, false).digests(new ByteArrayData(second), IDENTITY, ALGORITHMS));
+    }
+
+    @Test
+    void hitOnlyReadsFingerprint(@TempDir final Path directory) throws IOException {
+        final Path cacheFile = directory.resolve("cache");
+        final byte[] bytes = randomBytes(1000, 4);
+        plugin(cacheFile, false).digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS);
+
+        // a hit only reads the first, middle and last chunk
+        final CountingData data = new CountingData(new ByteArrayData(bytes));
+        assertDigests(bytes, plugin(cacheFile, false).digests(data, IDENTITY, ALGORITHMS));
+        assertEquals(3 * CHUNK_SIZE, data._read);
+    }
+
+    @Test
+    void verifiedHit(@TempDir final Path directory) throws IOException {
+        final Path cacheFile = directory.resolve("cache");
+        final byte[] bytes = randomBytes(1000, 2);
+
+        final DataDigestPlugin plugin = plugin(cacheFile, true);
+        assertDigests(bytes, plugin.digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS));
+        assertDigests(bytes, plugin.digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS));
+        assertEquals(2, DigestCache.shared(cacheFile, 64).hits());
+    }
+
+    @Test
+    void smallDataNotCached(@TempDir final Path directory) throws IOException {
+        final Path cacheFile = directory.resolve("cache");
+        // three chunks or less has no fingerprint
+        final byte[] bytes = randomBytes(3 * CHUNK_SIZE, 3);
+
+        final DataDigestPlugin plugin = plugin(cacheFile, false);
+        assertDigests(bytes, plugin.digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS));
+        assertDigests(bytes, plugin.digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS));
+        assertEquals(0, DigestCache.shared(cacheFile, 64).lookups());
+    }
+
+    private static DataDigestPlugin plugin(final Path cacheFile, final boolean verify) {
+        return new DataDigestPlugin(DataDigestSettings.builder()
+            .algorithms(DigestAlgorithm.MD5, DigestAlgorithm.SHA256)
+            .chunkSize(CHUNK_SIZE)
+            .cache(cacheFile, 64)
+            .cacheMinimumSize(0)
+            .verifyCache(verify)
+            .build());
+    }
+
+    private static void assertDigests(final byte[] bytes, final byte[][] digests) {
+        for (int i = 0; i < ALGORITHMS.size(); i++) {
+            assertArrayEquals(ALGORITHMS.get(i).newMessageDigest().digest(bytes), digests[i],
+                ALGORITHMS.get(i).propertyName());
+        }
+    }
+
+    /**
+     * Counts the bytes read from other data.
+     */
+    private static final class CountingData implements RandomAccessData {
+        private final RandomAccessData _data;
+        private long _read;
+
+        CountingData(final RandomAccessData data) {
+            _data = data;
+        }
+
+        @Override
+        public long size() {
+            return _data.size();
+        }
+
+        @Override
+        public long position() {
+            return _data.position();
+        }
+
+        @Override
+        public long remaining() {
+            return _data.remaining();
+        }
+
+        @Override
+        public void seek(final long position) throws IOException {
+            _data.seek(position);
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int count) throws IOException {
+            return read(buffer, 0, count);
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int count) throws IOException {
+            final int read = _data.read(buffer, offset, count);
+            _read += read;
+            return read;
+        }
+
+        @Override
+        public byte[] readNBytes(final int count) throws IOException {
+            final byte[] bytes = _data.readNBytes(count);
+            _read += bytes.length;
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _data.close();
+        }
+    }
+
+    private static byte[] randomBytes(final int length, final long seed) {
+        final byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,116 @@
+package org.hansken.plugin.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Calculates checkpointed digests of small data, using small chunks and a small checkpoint interval.
+ */
+class DataDigestPluginCheckpointTest {
+
+    private static final int CHUNK_SIZE = 16;
+    private static final int INTERVAL = 100;
+    private static final String IDENTITY = "0-1/raw";
+    private static final List<DigestAlgorithm> ALGORITHMS = List.of(DigestAlgorithm.SHA256);
+
+    @Test
+    void resumesFromCheckpoint(@TempDir final Path directory) throws Exception {
+        final byte[] bytes = randomBytes(1000, 1);
+        stopAt(directory, bytes, 500);
+
+        // the checkpoint holds the digest of the data hashed before the plugin was stopped, and the check of the
+        // chunk hashed last
+        final DigestCheckpoints.Checkpoint checkpoint = new DigestCheckpoints(directory).load(IDENTITY, bytes.length);
+        assertNotNull(checkpoint);
+        final int length = (int) checkpoint.digest().length();
+        assertTrue(length >= INTERVAL && length <= 500, "checkpoint at " + length);
+        final byte[] lastChunk = ByteBuffer.allocate(DigestCheckpoints.LAST_CHUNK_LENGTH)
+            .putInt(CHUNK_SIZE)
+            .put(sha256(Arrays.copyOfRange(bytes, length - CHUNK_SIZE, length)))
+            .array();
+        assertArrayEquals(lastChunk, checkpoint.lastChunk());
+
+        assertArrayEquals(sha256(bytes), plugin(directory).digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS)[0]);
+        assertNull(new DigestCheckpoints(directory).load(IDENTITY, bytes.length));
+    }
+
+    @Test
+    void otherDataWithTheSameIdentity(@TempDir final Path directory) throws Exception {
+        final byte[] first = randomBytes(1000, 1);
+        stopAt(directory, first, 500);
+
+        // a trace with the same id in another image: the checkpoint of the first data is not used
+        final byte[] second = randomBytes(1000, 2);
+        assertArrayEquals(sha256(second), plugin(directory).digests(new ByteArrayData(second), IDENTITY, ALGORITHMS)[0]);
+    }
+
+    @Test
+    void otherDataOnlyInLastChunk(@TempDir final Path directory) throws Exception {
+        final byte[] first = randomBytes(1000, 4);
+        stopAt(directory, first, 500);
+        final int length = (int) new DigestCheckpoints(directory).load(IDENTITY, first.length).digest().length();
+
+        // only the chunk hashed last before the checkpoint is checked, a difference in it is noticed
+        final byte[] second = first.clone();
+        second[length - 1] ^= 1;
+        assertArrayEquals(sha256(second), plugin(directory).digests(new ByteArrayData(second), IDENTITY, ALGORITHMS)[0]);
+    }
+
+    @Test
+    void belowMinimumSize(@TempDir final Path directory) throws IOException {
+        final byte[] bytes = randomBytes(1000, 5);
+        final DataDigestPlugin plugin = new DataDigestPlugin(DataDigestSettings.builder()
+            .chunkSize(CHUNK_SIZE)
+            .checkpoints(directory, INTERVAL)
+            .checkpointMinimumSize(bytes.length + 1)
+            .build());
+
+        // smaller data is hashed by a message digest, without saving its progress
+        assertThrows(RuntimeException.class,
+            () -> plugin.digests(new ByteArrayData(bytes, 500), IDENTITY, ALGORITHMS));
+        assertNull(new DigestCheckpoints(directory).load(IDENTITY, bytes.length));
+    }
+
+    @Test
+    void withoutCheckpoint(@TempDir final Path directory) throws IOException {
+        final byte[] bytes = randomBytes(1000, 3);
+        assertArrayEquals(sha256(bytes), plugin(directory).digests(new ByteArrayData(bytes), IDENTITY, ALGORITHMS)[0]);
+    }
+
+    // hashes the data until reading fails at the given position, as if the plugin was stopped there
+    private static void stopAt(final Path directory, final byte[] bytes, final int position) {
+        assertThrows(RuntimeException.class,
+            () -> plugin(directory).digests(new ByteArrayData(bytes, position), IDENTITY, ALGORITHMS));
+    }
+
+    private static DataDigestPlugin plugin(final Path directory) {
+        return new DataDigestPlugin(DataDigestSettings.builder()
+            .chunkSize(CHUNK_SIZE)
+            .checkpoints(directory, INTERVAL)
+            .checkpointMinimumSize(0)
+            .build());
+    }
+
+    private static byte[] sha256(final byte[] bytes) {
+        return DigestAlgorithm.SHA256.newMessageDigest().digest(bytes);
+    }
+
+    private static byte[] randomBytes(final int length, final long seed) {
+        final byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
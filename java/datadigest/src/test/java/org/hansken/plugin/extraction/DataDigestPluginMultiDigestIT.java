@@ -0,0 +1,36 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Calculates multiple digests of the same test inputs in a single pass.
+ */
+class DataDigestPluginMultiDigestIT extends EmbeddedExtractionPluginFlits {
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new DataDigestPlugin(DataDigestSettings.builder()
+            .algorithms(DigestAlgorithm.MD5, DigestAlgorithm.SHA1, DigestAlgorithm.SHA256)
+            .build());
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results-multidigest");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
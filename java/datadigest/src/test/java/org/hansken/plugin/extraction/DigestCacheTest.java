@@ -0,0 +1,93 @@
+package org.hansken.plugin.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DigestCacheTest {
+
+    private static final long SIZE = 1234;
+
+    @Test
+    void hit(@TempDir final Path directory) throws IOException {
+        final DigestCache cache = DigestCache.open(directory.resolve("cache"), 64);
+        cache.put(SIZE, fingerprint(1), DigestAlgorithm.SHA256, digest(32, 7));
+
+        assertArrayEquals(digest(32, 7), cache.get(SIZE, fingerprint(1), DigestAlgorithm.SHA256));
+        assertEquals(1, cache.lookups());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void miss(@TempDir final Path directory) throws IOException {
+        final DigestCache cache = DigestCache.open(directory.resolve("cache"), 64);
+        cache.put(SIZE, fingerprint(1), DigestAlgorithm.SHA256, digest(32, 7));
+
+        // another fingerprint, size or algorithm is other data, or another digest
+        assertNull(cache.get(SIZE, fingerprint(2), DigestAlgorithm.SHA256));
+        assertNull(cache.get(SIZE + 1, fingerprint(1), DigestAlgorithm.SHA256));
+        assertNull(cache.get(SIZE, fingerprint(1), DigestAlgorithm.MD5));
+        assertEquals(3, cache.lookups());
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    void replacesDigestOfSameData(@TempDir final Path directory) throws IOException {
+        final DigestCache cache = DigestCache.open(directory.resolve("cache"), 64);
+        cache.put(SIZE, fingerprint(1), DigestAlgorithm.SHA256, digest(32, 7));
+
+        // a digest calculated again, when verifying the cache, replaces the cached digest
+        cache.put(SIZE, fingerprint(1), DigestAlgorithm.SHA256, digest(32, 8));
+        assertArrayEquals(digest(32, 8), cache.get(SIZE, fingerprint(1), DigestAlgorithm.SHA256));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed(@TempDir final Path directory) throws IOException {
+        // a single set: the ninth digest replaces the one used longest ago
+        final DigestCache cache = DigestCache.open(directory.resolve("cache"), DigestCache.WAYS);
+        for (int i = 0; i < DigestCache.WAYS; i++) {
+            cache.put(SIZE, fingerprint(i), DigestAlgorithm.MD5, digest(16, i));
+        }
+        cache.get(SIZE, fingerprint(0), DigestAlgorithm.MD5);
+        cache.put(SIZE, fingerprint(DigestCache.WAYS), DigestAlgorithm.MD5, digest(16, DigestCache.WAYS));
+
+        assertArrayEquals(digest(16, 0), cache.get(SIZE, fingerprint(0), DigestAlgorithm.MD5));
+        assertNull(cache.get(SIZE, fingerprint(1), DigestAlgorithm.MD5));
+    }
+
+    @Test
+    void keptBetweenRuns(@TempDir final Path directory) throws IOException {
+        DigestCache.open(directory.resolve("cache"), 64).put(SIZE, fingerprint(1), DigestAlgorithm.SHA1,
+            digest(20, 7));
+
+        final DigestCache reopened = DigestCache.open(directory.resolve("cache"), 64);
+        assertArrayEquals(digest(20, 7), reopened.get(SIZE, fingerprint(1), DigestAlgorithm.SHA1));
+    }
+
+    @Test
+    void sharedOncePerProcess(@TempDir final Path directory) throws IOException {
+        final DigestCache cache = DigestCache.shared(directory.resolve("cache"), 64);
+        assertSame(cache, DigestCache.shared(directory.resolve("cache"), 64));
+        assertSame(cache, DigestCache.shared(directory.resolve("other/../cache"), 128));
+    }
+
+    private static byte[] fingerprint(final int value) {
+        final byte[] fingerprint = new byte[DataFingerprint.LENGTH];
+        fingerprint[0] = (byte) value;
+        return fingerprint;
+    }
+
+    private static byte[] digest(final int length, final int value) {
+        final byte[] digest = new byte[length];
+        Arrays.fill(digest, (byte) value);
+        return digest;
+    }
+}
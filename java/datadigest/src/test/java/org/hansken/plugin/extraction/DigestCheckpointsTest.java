@@ -0,0 +1,73 @@
+package org.hansken.plugin.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DigestCheckpointsTest {
+
+    private static final String IDENTITY = "0-1/raw";
+    private static final long SIZE = 10_000;
+
+    @Test
+    void saveLoadDelete(@TempDir final Path directory) throws IOException {
+        final byte[] bytes = new byte[1000];
+        new Random(1).nextBytes(bytes);
+        final Sha256 digest = new Sha256();
+        digest.update(bytes, 0, 700);
+
+        final byte[] lastChunk = new byte[DigestCheckpoints.LAST_CHUNK_LENGTH];
+        new Random(2).nextBytes(lastChunk);
+
+        final DigestCheckpoints checkpoints = new DigestCheckpoints(directory);
+        checkpoints.save(IDENTITY, SIZE, lastChunk, digest);
+        final DigestCheckpoints.Checkpoint checkpoint = checkpoints.load(IDENTITY, SIZE);
+        assertArrayEquals(lastChunk, checkpoint.lastChunk());
+        assertEquals(700, checkpoint.digest().length());
+
+        // the restored digest continues where the saved one was
+        checkpoint.digest().update(bytes, 700, 300);
+        assertArrayEquals(DigestAlgorithm.SHA256.newMessageDigest().digest(bytes), checkpoint.digest().digest());
+
+        checkpoints.delete(IDENTITY);
+        assertNull(checkpoints.load(IDENTITY, SIZE));
+        assertEquals(0, fileCount(directory));
+    }
+
+    @Test
+    void otherDataStream(@TempDir final Path directory) throws IOException {
+        final DigestCheckpoints checkpoints = new DigestCheckpoints(directory);
+        checkpoints.save(IDENTITY, SIZE, new byte[DigestCheckpoints.LAST_CHUNK_LENGTH], new Sha256());
+
+        assertNull(checkpoints.load("0-2/raw", SIZE));
+        assertNull(checkpoints.load("0-1/text", SIZE));
+        assertNull(checkpoints.load(IDENTITY, SIZE + 1));
+    }
+
+    @Test
+    void invalidCheckpointIgnored(@TempDir final Path directory) throws IOException {
+        final DigestCheckpoints checkpoints = new DigestCheckpoints(directory);
+        checkpoints.save(IDENTITY, SIZE, new byte[DigestCheckpoints.LAST_CHUNK_LENGTH], new Sha256());
+        try (Stream<Path> files = Files.list(directory)) {
+            final Path file = files.findFirst().orElseThrow();
+            Files.write(file, new byte[] {1, 2, 3});
+        }
+
+        assertNull(checkpoints.load(IDENTITY, SIZE));
+    }
+
+    private static long fileCount(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.hansken.plugin.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Test;
+
+class SegmentHashesTest {
+
+    private static final byte[] DATA = new byte[1000];
+    private static final ExecutorService HASHERS = DigestPipeline.newHasherPool();
+
+    static {
+        new Random(42).nextBytes(DATA);
+    }
+
+    @Test
+    void hashListOfSegments() throws IOException {
+        // segments smaller than, a multiple of and not aligned with the chunks, with a last segment of other size
+        for (final int segmentSize : new int[] {10, 64, 100, 333, 1000, 4096}) {
+            for (int lanes = 1; lanes <= 4; lanes++) {
+                assertArrayEquals(expected(segmentSize), hashList(segmentSize, lanes, 32),
+                    "segment size " + segmentSize + ", lanes " + lanes);
+            }
+        }
+    }
+
+    @Test
+    void lanesOnlyAcceptChunksOfTheirSegments() {
+        final List<DigestPipeline.ChunkConsumer> lanes = new SegmentHashes(DATA.length, 100).lanes(3);
+
+        // bytes 0-99 are segment 0, of lane 0
+        assertTrue(lanes.get(0).accepts(0, 100));
+        assertFalse(lanes.get(1).accepts(0, 100));
+        assertFalse(lanes.get(2).accepts(0, 100));
+        // bytes 150-249 are segments 1 and 2, of lanes 1 and 2
+        assertFalse(lanes.get(0).accepts(150, 100));
+        assertTrue(lanes.get(1).accepts(150, 100));
+        assertTrue(lanes.get(2).accepts(150, 100));
+        // bytes 250-549 are segments 2 to 5, of all lanes
+        assertTrue(lanes.get(0).accepts(250, 300));
+        assertTrue(lanes.get(1).accepts(250, 300));
+        assertTrue(lanes.get(2).accepts(250, 300));
+    }
+
+    private static byte[] hashList(final int segmentSize, final int lanes, final int chunkSize) throws IOException {
+        final SegmentHashes segments = new SegmentHashes(DATA.length, segmentSize);
+        try (DigestPipeline pipeline = new DigestPipeline(HASHERS, segments.lanes(lanes), chunkSize, 2)) {
+            for (int position = 0; position < DATA.length; position += chunkSize) {
+                final int length = Math.min(chunkSize, DATA.length - position);
+                final DigestPipeline.Chunk chunk = pipeline.acquire();
+                System.arraycopy(DATA, position, chunk.bytes(), 0, length);
+                chunk.set(position, length);
+                pipeline.submit(chunk);
+            }
+            pipeline.finish();
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        segments.write(output);
+        return output.toByteArray();
+    }
+
+    // the hash list with the digest of every segment calculated on its own
+    private static byte[] expected(final int segmentSize) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final DataOutputStream stream = new DataOutputStream(output);
+        stream.writeInt(0x53484c31);
+        stream.writeLong(segmentSize);
+        stream.writeLong(DATA.length);
+        for (int start = 0; start < DATA.length; start += segmentSize) {
+            final MessageDigest digest = DigestAlgorithm.SHA256.newMessageDigest();
+            final byte[] segment = Arrays.copyOfRange(DATA, start, Math.min(start + segmentSize, DATA.length));
+            stream.write(digest.digest(segment));
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,68 @@
+package org.hansken.plugin.extraction;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link Sha256} used for checkpointed digests to the SHA-256 {@link MessageDigest} of the JDK, which
+ * uses the SHA instructions of the CPU when there are any. Both hash 1 MiB chunks of data.
+ * <p>
+ * The {@code megabytes} counter gives the throughput in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Sha256Benchmark {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private byte[] _chunk;
+
+    /**
+     * Counts the hashed megabytes, which JMH reports per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _chunk = new byte[CHUNK_SIZE];
+        new Random(42).nextBytes(_chunk);
+    }
+
+    @Benchmark
+    public byte[] sha256(final Throughput throughput) {
+        final Sha256 digest = new Sha256();
+        digest.update(_chunk, 0, CHUNK_SIZE);
+        throughput.megabytes += CHUNK_SIZE / 1e6;
+        return digest.digest();
+    }
+
+    @Benchmark
+    public byte[] messageDigest(final Throughput throughput) {
+        final MessageDigest digest = DigestAlgorithm.SHA256.newMessageDigest();
+        digest.update(_chunk, 0, CHUNK_SIZE);
+        throughput.megabytes += CHUNK_SIZE / 1e6;
+        return digest.digest();
+    }
+}
@@ -0,0 +1,93 @@
+package org.hansken.plugin.extraction;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class Sha256Test {
+
+    // the known answers of FIPS 180-4 and NIST's SHA-256 examples
+    @Test
+    void knownAnswers() {
+        assertDigest("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", "");
+        assertDigest("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", "abc");
+        assertDigest("248d6a61d20638b8e5c026930c3e6039a33ce45964ff2167f6ecedd419db06c1",
+            "abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopq");
+        assertDigest("cf5b16a778af8380036ce59e7b0492370b249b11e8f07a51afac45037afee9d1",
+            "abcdefghbcdefghicdefghijdefghijkefghijklfghijklmghijklmnhijklmnoijklmnopjklmnopqklmnopqrlmnopqrs"
+                + "mnopqrstnopqrstu");
+
+        final byte[] million = new byte[1_000_000];
+        Arrays.fill(million, (byte) 'a');
+        final Sha256 digest = new Sha256();
+        digest.update(million, 0, million.length);
+        assertEquals("cdc76e5c9914fb9281a1c7e284d73e67f1809a48a497200e046d39ccc7112cd0", hex(digest.digest()));
+    }
+
+    // every length around the block and padding boundaries, in updates of every size
+    @Test
+    void sameAsMessageDigest() {
+        final byte[] bytes = new byte[300];
+        new Random(1).nextBytes(bytes);
+        for (int length = 0; length <= bytes.length; length++) {
+            final byte[] expected = DigestAlgorithm.SHA256.newMessageDigest().digest(Arrays.copyOf(bytes, length));
+            for (final int updateSize : new int[] {1, 7, 63, 64, 65, 300}) {
+                final Sha256 digest = new Sha256();
+                for (int position = 0; position < length; position += updateSize) {
+                    digest.update(bytes, position, Math.min(updateSize, length - position));
+                }
+                assertArrayEquals(expected, digest.digest(), "length " + length + ", updates of " + updateSize);
+            }
+        }
+    }
+
+    @Test
+    void exportAndImportState() {
+        final byte[] bytes = new byte[1000];
+        new Random(2).nextBytes(bytes);
+        final byte[] expected = DigestAlgorithm.SHA256.newMessageDigest().digest(bytes);
+        for (final int split : new int[] {0, 1, 63, 64, 65, 500, 1000}) {
+            final Sha256 first = new Sha256();
+            first.update(bytes, 0, split);
+            final Sha256 resumed = Sha256.importState(first.exportState());
+            assertEquals(split, resumed.length());
+            resumed.update(bytes, split, bytes.length - split);
+            assertArrayEquals(expected, resumed.digest(), "split at " + split);
+        }
+    }
+
+    @Test
+    void invalidState() {
+        final Sha256 digest = new Sha256();
+        digest.update(new byte[100], 0, 100);
+        final byte[] state = digest.exportState();
+
+        assertThrows(IllegalArgumentException.class, () -> Sha256.importState(Arrays.copyOf(state, 20)));
+        assertThrows(IllegalArgumentException.class, () -> Sha256.importState(Arrays.copyOf(state, state.length - 1)));
+        // the length does not match the number of buffered bytes
+        state[39]++;
+        assertThrows(IllegalArgumentException.class, () -> Sha256.importState(state));
+    }
+
+    private static void assertDigest(final String expected, final String message) {
+        final byte[] bytes = message.getBytes(US_ASCII);
+        final Sha256 digest = new Sha256();
+        digest.update(bytes, 0, bytes.length);
+        assertEquals(expected, hex(digest.digest()), message);
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
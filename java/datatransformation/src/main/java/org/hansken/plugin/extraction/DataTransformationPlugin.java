@@ -3,6 +3,7 @@ package org.hansken.plugin.extraction;
 import static java.lang.String.format;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 import org.hansken.plugin.extraction.api.Author;
 import org.hansken.plugin.extraction.api.DataContext;
@@ -10,6 +11,7 @@ import org.hansken.plugin.extraction.api.ExtractionPlugin;
 import org.hansken.plugin.extraction.api.MaturityLevel;
 import org.hansken.plugin.extraction.api.PluginId;
 import org.hansken.plugin.extraction.api.PluginInfo;
+import org.hansken.plugin.extraction.api.PluginResources;
 import org.hansken.plugin.extraction.api.RandomAccessData;
 import org.hansken.plugin.extraction.api.Trace;
 import org.hansken.plugin.extraction.api.transformations.RangedDataTransformation;
@@ -27,6 +29,19 @@ public final class DataTransformationPlugin implements ExtractionPlugin {
 
     public static final char LINE_SEPARATOR = '\n';
 
+    private final DataTransformationSettings _settings;
+    // scans segments of the data for lines on multiple threads, or null if the data is scanned on a single thread
+    private final ExecutorService _scanner;
+
+    public DataTransformationPlugin() {
+        this(DataTransformationSettings.builder().build());
+    }
+
+    public DataTransformationPlugin(final DataTransformationSettings settings) {
+        _settings = settings;
+        _scanner = settings.getScanThreads() > 1 ? ParallelLineScanner.newScannerPool(settings.getScanThreads()) : null;
+    }
+
     @Override
     public PluginInfo pluginInfo() {
         final Author author = Author.builder()
@@ -35,7 +50,7 @@ public final class DataTransformationPlugin implements ExtractionPlugin {
             .organisation("NFI")
             .build();
 
-        return PluginInfo.builderFor(this)
+        final PluginInfo.Builder builder = PluginInfo.builderFor(this)
             .pluginVersion("1.0.0")
             .description("Example Extraction Plugin: This plugin creates a child trace with a ranged data transformation for each line of a simple made-up chat log.")
             .author(author)
@@ -43,8 +58,15 @@ public final class DataTransformationPlugin implements ExtractionPlugin {
             .webpageUrl("https://hansken.org")
             .hqlMatcher("type=file AND $data.mimeClass=text")
             .id(new PluginId(TOOL_DOMAIN, TOOL_CATEGORY, TOOL_NAME))
-            .license(TOOL_LICENSE)
-            .build();
+            .license(TOOL_LICENSE);
+
+        // the data is scanned for lines on multiple cores when scanning in parallel
+        if (_settings.getScanThreads() > 1) {
+            builder.resources(PluginResources.builder()
+                .maximumCpu(_settings.getScanThreads())
+                .build());
+        }
+        return builder.build();
     }
 
     @Override
@@ -52,32 +74,105 @@ public final class DataTransformationPlugin implements ExtractionPlugin {
         // log something to the output as an example
         LOG.info("processing trace {} file: {}", trace.get("name"), trace.get("file.name"));
 
-        int offset = 0;
-        int length = 0;
-        int lineNumber = 0;
         final RandomAccessData data = context.data();
-        while (data.remaining() > 0) {
-            length++;
-            if (getNextChar(data) == LINE_SEPARATOR) {
-                lineNumber++;
-                buildChild(trace, lineNumber, RangedDataTransformation.builder().addRange(offset, length).build());
-                offset += length;
-                length = 0;
-            }
+        final boolean lines = _settings.getRecordFormat().isLines();
+        if (_settings.isGrouped()) {
+            final LineGroupChildren children = new LineGroupChildren(trace, _settings, lines ? "lines %d-%d" : "records %d-%d");
+            scan(data, children);
+            children.flush();
         }
-        // If there is remaining data, this forms the last child. But we don't want a child with data length 0.
-        if (length > 0) {
-            buildChild(trace, lineNumber + 1, RangedDataTransformation.builder().addRange(offset, length).build());
+        else {
+            scan(data, new LineChildren(trace, lines ? "lineNumber %d" : "recordNumber %d"));
         }
     }
 
-    private void buildChild(final Trace trace, final int lineNumber, final RangedDataTransformation transformation) throws IOException {
-        trace.newChild(format("lineNumber %d", lineNumber), child -> {
-            child.setData("raw", transformation);
-        });
+    private void scan(final RandomAccessData data, final LineScanner.LineHandler handler) throws IOException {
+        final RecordFormat format = _settings.getRecordFormat();
+        if (_scanner != null && format.isSingleByteDelimited()) {
+            new ParallelLineScanner(format.singleByteDelimiter(), _scanner, _settings.getScanThreads(), _settings.getScanSegmentSize())
+                .scan(data, handler);
+        }
+        else {
+            new LineScanner(format.newDetector(), _settings.getBlockSize()).scan(data, handler);
+        }
     }
 
-    private char getNextChar(final RandomAccessData data) throws IOException {
-        return (char) data.readNBytes(1)[0];
+    /**
+     * Adds a child trace for each line (or record), with a ranged data transformation of that line.
+     */
+    private static final class LineChildren implements LineScanner.LineHandler {
+        private final Trace _trace;
+        private final String _nameFormat;
+        private long _lineNumber;
+
+        LineChildren(final Trace trace, final String nameFormat) {
+            _trace = trace;
+            _nameFormat = nameFormat;
+        }
+
+        @Override
+        public void line(final long offset, final long length) throws IOException {
+            _lineNumber++;
+            final RangedDataTransformation transformation = RangedDataTransformation.builder().addRange(offset, length).build();
+            _trace.newChild(format(_nameFormat, _lineNumber), child -> {
+                child.setData("raw", transformation);
+            });
+        }
+    }
+
+    /**
+     * Adds a child trace for each group of lines (or records). The lines of a group follow each other in the data, so
+     * the data of a child is a single range, from the start of its first line to the end of its last. The offsets of
+     * its lines are stored with the child, so a single line can still be located in its data.
+     */
+    private static final class LineGroupChildren implements LineScanner.LineHandler {
+        private final Trace _trace;
+        private final int _linesPerChild;
+        private final long _bytesPerChild;
+        private final String _nameFormat;
+        private final LineOffsets _lineOffsets;
+
+        private long _firstLine = 1;
+        private long _offset;
+        private long _bytes;
+
+        LineGroupChildren(final Trace trace, final DataTransformationSettings settings, final String nameFormat) {
+            _trace = trace;
+            _linesPerChild = settings.getLinesPerChild();
+            _bytesPerChild = settings.getBytesPerChild();
+            _nameFormat = nameFormat;
+            _lineOffsets = new LineOffsets(Math.min(_linesPerChild, 1024));
+        }
+
+        @Override
+        public void line(final long offset, final long length) throws IOException {
+            if (_lineOffsets.count() == 0) {
+                _offset = offset;
+            }
+            _lineOffsets.add(offset - _offset);
+            _bytes += length;
+            if (_lineOffsets.count() >= _linesPerChild || _bytes >= _bytesPerChild) {
+                addGroup();
+            }
+        }
+
+        void flush() throws IOException {
+            if (_lineOffsets.count() > 0) {
+                addGroup();
+            }
+        }
+
+        private void addGroup() throws IOException {
+            final RangedDataTransformation transformation = RangedDataTransformation.builder().addRange(_offset, _bytes).build();
+            final byte[] lineOffsets = _lineOffsets.toBytes();
+            final long lastLine = _firstLine + _lineOffsets.count() - 1;
+            _trace.newChild(format(_nameFormat, _firstLine, lastLine), child -> {
+                child.setData("raw", transformation);
+                child.setData(LineOffsets.DATA_TYPE, output -> output.write(lineOffsets));
+            });
+            _firstLine = lastLine + 1;
+            _lineOffsets.clear();
+            _bytes = 0;
+        }
     }
-}
\ No newline at end of file
+}
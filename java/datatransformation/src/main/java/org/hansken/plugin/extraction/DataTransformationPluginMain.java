@@ -3,7 +3,63 @@ package org.hansken.plugin.extraction;
 import org.hansken.plugin.extraction.runtime.grpc.server.ExtractionPluginServerMain;
 
 public class DataTransformationPluginMain {
+
+    // the system properties grouping lines into children: the maximum number of lines and bytes of a child
+    private static final String LINES_PER_CHILD_PROPERTY = "linesPerChild";
+    private static final String BYTES_PER_CHILD_PROPERTY = "bytesPerChild";
+    // the system property with the size of the blocks the data is read in when scanned on a single thread
+    private static final String BLOCK_SIZE_PROPERTY = "blockSize";
+    // the system property with the number of threads scanning the data for lines
+    private static final String SCAN_THREADS_PROPERTY = "scanThreads";
+    // the system property with the format of the records: lines, csv, fixed:<length> or delimiter:<hex bytes>
+    private static final String RECORD_FORMAT_PROPERTY = "recordFormat";
+
     public static void main(String... args) {
-        ExtractionPluginServerMain.runMain(DataTransformationPlugin::new, args);
+        final DataTransformationSettings.Builder settings = DataTransformationSettings.builder();
+        final Integer linesPerChild = Integer.getInteger(LINES_PER_CHILD_PROPERTY);
+        final Long bytesPerChild = Long.getLong(BYTES_PER_CHILD_PROPERTY);
+        if (linesPerChild != null || bytesPerChild != null) {
+            settings.group(linesPerChild == null ? DataTransformationSettings.MAX_LINES_PER_CHILD : linesPerChild,
+                bytesPerChild == null ? Long.MAX_VALUE : bytesPerChild);
+        }
+        final Integer blockSize = Integer.getInteger(BLOCK_SIZE_PROPERTY);
+        if (blockSize != null) {
+            settings.blockSize(blockSize);
+        }
+        final Integer scanThreads = Integer.getInteger(SCAN_THREADS_PROPERTY);
+        if (scanThreads != null) {
+            settings.parallelScan(scanThreads, ParallelLineScanner.DEFAULT_SEGMENT_SIZE);
+        }
+        final String recordFormat = System.getProperty(RECORD_FORMAT_PROPERTY);
+        if (recordFormat != null) {
+            settings.records(parseRecordFormat(recordFormat));
+        }
+
+        final DataTransformationSettings transformationSettings = settings.build();
+        ExtractionPluginServerMain.runMain(() -> new DataTransformationPlugin(transformationSettings), args);
+    }
+
+    private static RecordFormat parseRecordFormat(final String value) {
+        if (value.equals("lines")) {
+            return RecordFormat.lines();
+        }
+        if (value.equals("csv")) {
+            return RecordFormat.csv();
+        }
+        if (value.startsWith("fixed:")) {
+            return RecordFormat.fixedLength(Integer.parseInt(value.substring("fixed:".length())));
+        }
+        if (value.startsWith("delimiter:")) {
+            final String hex = value.substring("delimiter:".length());
+            if (hex.length() % 2 != 0) {
+                throw new IllegalArgumentException("delimiter must be an even number of hex digits: " + hex);
+            }
+            final byte[] delimiter = new byte[hex.length() / 2];
+            for (int i = 0; i < delimiter.length; i++) {
+                delimiter[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+            }
+            return RecordFormat.delimitedBy(delimiter);
+        }
+        throw new IllegalArgumentException("unknown record format: " + value);
     }
 }
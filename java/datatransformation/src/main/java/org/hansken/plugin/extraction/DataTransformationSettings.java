@@ -0,0 +1,165 @@
+package org.hansken.plugin.extraction;
+
+/**
+ * The settings of the {@link DataTransformationPlugin}. The defaults create a child trace for every line.
+ */
+public final class DataTransformationSettings {
+
+    /**
+     * The maximum number of lines in a child, also when lines are only grouped by their number of bytes.
+     */
+    public static final int MAX_LINES_PER_CHILD = 64 * 1024;
+
+    private final int _linesPerChild;
+    private final long _bytesPerChild;
+    private final int _blockSize;
+    private final int _scanThreads;
+    private final int _scanSegmentSize;
+    private final RecordFormat _recordFormat;
+
+    private DataTransformationSettings(final Builder builder) {
+        _linesPerChild = builder._linesPerChild;
+        _bytesPerChild = builder._bytesPerChild;
+        _blockSize = builder._blockSize;
+        _scanThreads = builder._scanThreads;
+        _scanSegmentSize = builder._scanSegmentSize;
+        _recordFormat = builder._recordFormat;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the maximum number of lines in a child
+     */
+    public int getLinesPerChild() {
+        return _linesPerChild;
+    }
+
+    /**
+     * @return the number of bytes after which no more lines are added to a child
+     */
+    public long getBytesPerChild() {
+        return _bytesPerChild;
+    }
+
+    /**
+     * @return whether a child can contain more than one line
+     */
+    public boolean isGrouped() {
+        return _linesPerChild > 1;
+    }
+
+    /**
+     * @return the size of the blocks the data is read in when it is scanned for lines on a single thread
+     */
+    public int getBlockSize() {
+        return _blockSize;
+    }
+
+    /**
+     * @return the number of threads scanning the data for lines
+     */
+    public int getScanThreads() {
+        return _scanThreads;
+    }
+
+    /**
+     * @return the size of the segments of data which are scanned for lines in parallel
+     */
+    public int getScanSegmentSize() {
+        return _scanSegmentSize;
+    }
+
+    /**
+     * @return how the data is split into records, lines by default
+     */
+    public RecordFormat getRecordFormat() {
+        return _recordFormat;
+    }
+
+    public static final class Builder {
+        private int _linesPerChild = 1;
+        private long _bytesPerChild = Long.MAX_VALUE;
+        private int _blockSize = LineScanner.DEFAULT_BLOCK_SIZE;
+        private int _scanThreads = 1;
+        private int _scanSegmentSize = ParallelLineScanner.DEFAULT_SEGMENT_SIZE;
+        private RecordFormat _recordFormat = RecordFormat.lines();
+
+        private Builder() {
+        }
+
+        /**
+         * Groups lines into children: a child gets the lines up to the given number of lines, or until it has at
+         * least the given number of bytes. The data of a child is the range of its lines.
+         *
+         * @param linesPerChild the maximum number of lines in a child, at most {@link #MAX_LINES_PER_CHILD}
+         * @param bytesPerChild the number of bytes after which no more lines are added to a child
+         * @return this builder
+         */
+        public Builder group(final int linesPerChild, final long bytesPerChild) {
+            if (linesPerChild < 1 || bytesPerChild < 1) {
+                throw new IllegalArgumentException("linesPerChild and bytesPerChild must be at least 1: "
+                    + linesPerChild + ", " + bytesPerChild);
+            }
+            if (linesPerChild > MAX_LINES_PER_CHILD) {
+                throw new IllegalArgumentException("linesPerChild must be at most " + MAX_LINES_PER_CHILD + ": "
+                    + linesPerChild);
+            }
+            _linesPerChild = linesPerChild;
+            _bytesPerChild = bytesPerChild;
+            return this;
+        }
+
+        /**
+         * Sets the size of the blocks the data is read in when it is scanned for lines on a single thread, which is
+         * the memory used per scan.
+         *
+         * @param blockSize the size of a block in bytes
+         * @return this builder
+         */
+        public Builder blockSize(final int blockSize) {
+            if (blockSize < 1) {
+                throw new IllegalArgumentException("blockSize must be at least 1: " + blockSize);
+            }
+            _blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Scans the data for lines on multiple threads. The data is still read sequentially, in segments of the given
+         * size, but the segments are scanned for line separators in parallel.
+         *
+         * @param scanThreads the number of threads scanning the data
+         * @param scanSegmentSize the size of a segment in bytes
+         * @return this builder
+         */
+        public Builder parallelScan(final int scanThreads, final int scanSegmentSize) {
+            if (scanThreads < 1 || scanSegmentSize < 1) {
+                throw new IllegalArgumentException("scanThreads and scanSegmentSize must be at least 1: "
+                    + scanThreads + ", " + scanSegmentSize);
+            }
+            _scanThreads = scanThreads;
+            _scanSegmentSize = scanSegmentSize;
+            return this;
+        }
+
+        /**
+         * Splits the data into other records than lines, such as NUL delimited strings, fixed length records or CSV
+         * records. The records are grouped like lines; only records with a single byte delimiter are scanned for in
+         * parallel.
+         *
+         * @param recordFormat how the data is split into records
+         * @return this builder
+         */
+        public Builder records(final RecordFormat recordFormat) {
+            _recordFormat = recordFormat;
+            return this;
+        }
+
+        public DataTransformationSettings build() {
+            return new DataTransformationSettings(this);
+        }
+    }
+}
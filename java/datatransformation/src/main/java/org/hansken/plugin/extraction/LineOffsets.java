@@ -0,0 +1,75 @@
+package org.hansken.plugin.extraction;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The offsets of the lines (or records) of a group, relative to the start of the group. The data of a group child
+ * is the single range of all its lines, so the offsets are stored with the child, in a data stream of type
+ * {@value #DATA_TYPE}: the start of every line as an 8 byte big endian offset into the data of the child. A line of
+ * the group is located with {@link #locate(ByteBuffer, long, int)}.
+ */
+final class LineOffsets {
+
+    /**
+     * The type of the data stream of a group child holding the offsets of its lines.
+     */
+    static final String DATA_TYPE = "raw-line-offsets";
+
+    private long[] _starts;
+    private int _count;
+
+    LineOffsets(final int initialCapacity) {
+        _starts = new long[initialCapacity];
+    }
+
+    /**
+     * @param start the start of the next line, relative to the start of the group
+     */
+    void add(final long start) {
+        if (_count == _starts.length) {
+            _starts = Arrays.copyOf(_starts, 2 * _count);
+        }
+        _starts[_count++] = start;
+    }
+
+    /**
+     * @return the number of lines added since the last {@link #clear()}
+     */
+    int count() {
+        return _count;
+    }
+
+    void clear() {
+        _count = 0;
+    }
+
+    /**
+     * @return the data stream holding the offsets of the lines added
+     */
+    byte[] toBytes() {
+        final ByteBuffer bytes = ByteBuffer.allocate(_count * Long.BYTES);
+        for (int i = 0; i < _count; i++) {
+            bytes.putLong(_starts[i]);
+        }
+        return bytes.array();
+    }
+
+    /**
+     * Locates a line in the data of a group child.
+     *
+     * @param offsets the data stream holding the offsets of the lines of the child
+     * @param size the size of the data of the child
+     * @param line the index of the line in the group, starting at 0
+     * @return the offset of the line in the data of the child and its length
+     */
+    static long[] locate(final ByteBuffer offsets, final long size, final int line) {
+        final int lines = offsets.remaining() / Long.BYTES;
+        if (line < 0 || line >= lines) {
+            throw new IndexOutOfBoundsException("line " + line + " of a group of " + lines + " lines");
+        }
+        final long start = offsets.getLong(offsets.position() + line * Long.BYTES);
+        final long end = line + 1 < lines ? offsets.getLong(offsets.position() + (line + 1) * Long.BYTES) : size;
+        return new long[] {start, end - start};
+    }
+}
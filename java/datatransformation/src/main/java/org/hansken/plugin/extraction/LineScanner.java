@@ -0,0 +1,112 @@
+package org.hansken.plugin.extraction;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * Finds the lines in data. The data is read in large blocks, which are searched for the line separator eight bytes
+ * at a time, so the cost per byte is a fraction of a read call.
+ * <p>
+ * More generally, the scanner finds the records of data as delimited by a {@link RecordBoundaryDetector}, in the
+ * same single pass over the data; a line is the record of the default detector.
+ */
+final class LineScanner {
+
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024; // 1 MiB
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Handles the lines found, in the order of the data.
+     */
+    @FunctionalInterface
+    interface LineHandler {
+        /**
+         * @param offset the offset of the line in the data
+         * @param length the length of the line, including its line separator (if any)
+         */
+        void line(long offset, long length) throws IOException;
+    }
+
+    private final RecordBoundaryDetector _detector;
+    private final byte[] _block;
+
+    LineScanner(final byte separator) {
+        this(separator, DEFAULT_BLOCK_SIZE);
+    }
+
+    LineScanner(final byte separator, final int blockSize) {
+        this(new RecordBoundaryDetector.ByteDelimiter(separator), blockSize);
+    }
+
+    LineScanner(final RecordBoundaryDetector detector) {
+        this(detector, DEFAULT_BLOCK_SIZE);
+    }
+
+    LineScanner(final RecordBoundaryDetector detector, final int blockSize) {
+        _detector = detector;
+        _block = new byte[blockSize];
+    }
+
+    /**
+     * Scans the remaining data for lines. A last line without a line separator is handled as well, but an empty
+     * last line is not.
+     *
+     * @param data the data to scan
+     * @param handler the handler of the lines found
+     * @throws IOException when the data could not be read, or by the handler
+     */
+    void scan(final RandomAccessData data, final LineHandler handler) throws IOException {
+        long blockOffset = 0;
+        long lineStart = 0;
+        while (data.remaining() > 0) {
+            final int length = (int) Math.min(_block.length, data.remaining());
+            if (data.read(_block, length) != length) {
+                throw new EOFException("could not read " + length + " bytes at offset " + blockOffset);
+            }
+
+            int end = _detector.next(_block, 0, length);
+            while (end >= 0) {
+                final long lineEnd = blockOffset + end;
+                handler.line(lineStart, lineEnd - lineStart);
+                lineStart = lineEnd;
+                end = end < length ? _detector.next(_block, end, length) : -1;
+            }
+            blockOffset += length;
+        }
+        if (blockOffset > lineStart) {
+            handler.line(lineStart, blockOffset - lineStart);
+        }
+    }
+
+    /**
+     * Finds the first occurrence of a byte in a range of an array, comparing eight bytes at a time.
+     *
+     * @return the index of the byte, or -1 if it does not occur in the range
+     */
+    static int indexOf(final byte[] bytes, final int from, final int to, final byte value) {
+        final long pattern = ONES * (value & 0xff);
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            // the bytes equal to the value become zero, the lowest zero byte sets the lowest high bit in found
+            final long word = (long) LONGS.get(bytes, i) ^ pattern;
+            final long found = (word - ONES) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
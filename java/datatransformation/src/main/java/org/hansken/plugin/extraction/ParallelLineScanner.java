@@ -0,0 +1,149 @@
+package org.hansken.plugin.extraction;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * Finds the lines in data on multiple threads. The data is read in large segments by the calling thread, each
+ * segment is scanned for line separators on a thread pool into an array of offsets, and the offsets are merged
+ * into lines which are handed to the {@link LineScanner.LineHandler} in the order of the data.
+ * <p>
+ * At most two segments per thread are in flight, and their buffers are reused, so the memory used is bounded by
+ * the segment size and the number of threads. The thread pool is shared by the scans of all traces.
+ */
+final class ParallelLineScanner {
+
+    static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024; // 8 MiB
+
+    private final byte _separator;
+    private final ExecutorService _executor;
+    private final int _threads;
+    private final int _segmentSize;
+
+    ParallelLineScanner(final byte separator, final ExecutorService executor, final int threads, final int segmentSize) {
+        _separator = separator;
+        _executor = executor;
+        _threads = threads;
+        _segmentSize = segmentSize;
+    }
+
+    /**
+     * Creates a pool of daemon threads to scan segments with, the plugin has no life cycle to shut it down at.
+     *
+     * @param threads the number of threads
+     * @return the pool
+     */
+    static ExecutorService newScannerPool(final int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "line-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Scans the remaining data for lines, like {@link LineScanner#scan(RandomAccessData, LineScanner.LineHandler)}.
+     *
+     * @param data the data to scan
+     * @param handler the handler of the lines found
+     * @throws IOException when the data could not be read, or by the handler
+     */
+    void scan(final RandomAccessData data, final LineScanner.LineHandler handler) throws IOException {
+        final int maxPending = 2 * _threads;
+        final byte[][] buffers = new byte[maxPending][];
+        final Deque<Future<Offsets>> pending = new ArrayDeque<>();
+        try {
+            long position = 0;
+            long lineStart = 0;
+            for (int segment = 0; data.remaining() > 0; segment++) {
+                if (pending.size() == maxPending) {
+                    // the oldest segment is merged before its buffer is reused
+                    lineStart = merge(await(pending.remove()), lineStart, handler);
+                }
+
+                final int length = (int) Math.min(_segmentSize, data.remaining());
+                final int index = segment % maxPending;
+                if (buffers[index] == null || buffers[index].length < length) {
+                    buffers[index] = new byte[length];
+                }
+                final byte[] buffer = buffers[index];
+                if (data.read(buffer, length) != length) {
+                    throw new EOFException("could not read " + length + " bytes at offset " + position);
+                }
+                final long offset = position;
+                pending.add(_executor.submit(() -> scanSegment(buffer, length, offset)));
+                position += length;
+            }
+            while (!pending.isEmpty()) {
+                lineStart = merge(await(pending.remove()), lineStart, handler);
+            }
+            if (position > lineStart) {
+                handler.line(lineStart, position - lineStart);
+            }
+        }
+        finally {
+            // segments still pending after a failure are not needed anymore
+            for (final Future<Offsets> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Offsets scanSegment(final byte[] bytes, final int length, final long offset) {
+        final Offsets offsets = new Offsets();
+        int separator = LineScanner.indexOf(bytes, 0, length, _separator);
+        while (separator >= 0) {
+            offsets.add(offset + separator);
+            separator = LineScanner.indexOf(bytes, separator + 1, length, _separator);
+        }
+        return offsets;
+    }
+
+    private static long merge(final Offsets offsets, final long lineStart, final LineScanner.LineHandler handler) throws IOException {
+        long start = lineStart;
+        for (int i = 0; i < offsets._count; i++) {
+            final long end = offsets._values[i] + 1;
+            handler.line(start, end - start);
+            start = end;
+        }
+        return start;
+    }
+
+    private static Offsets await(final Future<Offsets> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while scanning for lines");
+        }
+        catch (final ExecutionException e) {
+            throw new IOException("failed to scan for lines", e.getCause());
+        }
+    }
+
+    /**
+     * The offsets of the line separators in a segment, in a growing primitive array.
+     */
+    private static final class Offsets {
+        private long[] _values = new long[1024];
+        private int _count;
+
+        void add(final long value) {
+            if (_count == _values.length) {
+                _values = Arrays.copyOf(_values, 2 * _count);
+            }
+            _values[_count++] = value;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.hansken.plugin.extraction;
+
+/**
+ * Finds the ends of the records in data, which is passed to the detector block by block in a single pass. A
+ * detector keeps the state of the record it is in between blocks, so a record (or its delimiter) can span blocks,
+ * and it never needs to look back at earlier blocks. A detector is used for a single pass over a single data.
+ */
+interface RecordBoundaryDetector {
+
+    /**
+     * Finds the end of the current record in a range of a block.
+     *
+     * @param bytes the block
+     * @param from the index to continue from
+     * @param to the end of the range in the block
+     * @return the index just after the last byte of the record (including its delimiter, if any), or -1 if the
+     *         record does not end in the range
+     */
+    int next(byte[] bytes, int from, int to);
+
+    /**
+     * Ends records after a single byte, which is searched for eight bytes at a time.
+     */
+    final class ByteDelimiter implements RecordBoundaryDetector {
+        private final byte _delimiter;
+
+        ByteDelimiter(final byte delimiter) {
+            _delimiter = delimiter;
+        }
+
+        @Override
+        public int next(final byte[] bytes, final int from, final int to) {
+            final int index = LineScanner.indexOf(bytes, from, to, _delimiter);
+            return index < 0 ? -1 : index + 1;
+        }
+    }
+
+    /**
+     * Ends records after a sequence of bytes. The number of delimiter bytes matched so far is kept between blocks,
+     * and on a mismatch the match continues with the longest prefix of the delimiter which is also a suffix of the
+     * bytes matched (Knuth-Morris-Pratt), so no byte is looked at twice.
+     */
+    final class Delimiter implements RecordBoundaryDetector {
+        private final byte[] _delimiter;
+        // the length of the longest proper prefix of delimiter[0..i] which is also a suffix of it
+        private final int[] _fallback;
+        private int _matched;
+
+        Delimiter(final byte[] delimiter) {
+            if (delimiter.length == 0) {
+                throw new IllegalArgumentException("empty record delimiter");
+            }
+            _delimiter = delimiter.clone();
+            _fallback = new int[delimiter.length];
+            int length = 0;
+            for (int i = 1; i < delimiter.length; i++) {
+                while (length > 0 && delimiter[i] != delimiter[length]) {
+                    length = _fallback[length - 1];
+                }
+                if (delimiter[i] == delimiter[length]) {
+                    length++;
+                }
+                _fallback[i] = length;
+            }
+        }
+
+        @Override
+        public int next(final byte[] bytes, final int from, final int to) {
+            int i = from;
+            while (i < to) {
+                if (_matched == 0) {
+                    // skip ahead to the next candidate start of the delimiter
+                    i = LineScanner.indexOf(bytes, i, to, _delimiter[0]);
+                    if (i < 0) {
+                        return -1;
+                    }
+                }
+                final byte b = bytes[i++];
+                while (_matched > 0 && b != _delimiter[_matched]) {
+                    _matched = _fallback[_matched - 1];
+                }
+                if (b == _delimiter[_matched]) {
+                    _matched++;
+                }
+                if (_matched == _delimiter.length) {
+                    _matched = 0;
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Ends records after a fixed number of bytes.
+     */
+    final class FixedLength implements RecordBoundaryDetector {
+        private final int _length;
+        // the number of bytes left in the current record
+        private int _remaining;
+
+        FixedLength(final int length) {
+            if (length < 1) {
+                throw new IllegalArgumentException("record length must be at least 1: " + length);
+            }
+            _length = length;
+            _remaining = length;
+        }
+
+        @Override
+        public int next(final byte[] bytes, final int from, final int to) {
+            if (to - from < _remaining) {
+                _remaining -= to - from;
+                return -1;
+            }
+            final int end = from + _remaining;
+            _remaining = _length;
+            return end;
+        }
+    }
+
+    /**
+     * Ends records after a line separator which is not inside a quoted field, so a CSV record with a quoted value
+     * containing line separators is kept together. An escaped quote ({@code ""}) inside a quoted field leaves and
+     * enters the quoted field again, so it needs no special handling.
+     */
+    final class QuotedLines implements RecordBoundaryDetector {
+        private final byte _quote;
+        private final byte _separator;
+        private boolean _quoted;
+
+        QuotedLines(final byte quote, final byte separator) {
+            _quote = quote;
+            _separator = separator;
+        }
+
+        @Override
+        public int next(final byte[] bytes, final int from, final int to) {
+            int i = from;
+            while (i < to) {
+                if (_quoted) {
+                    // only the closing quote matters inside a quoted field
+                    i = LineScanner.indexOf(bytes, i, to, _quote);
+                    if (i < 0) {
+                        return -1;
+                    }
+                    _quoted = false;
+                    i++;
+                }
+                else {
+                    final byte b = bytes[i++];
+                    if (b == _quote) {
+                        _quoted = true;
+                    }
+                    else if (b == _separator) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+}
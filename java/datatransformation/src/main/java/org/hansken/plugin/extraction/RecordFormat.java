@@ -0,0 +1,93 @@
+package org.hansken.plugin.extraction;
+
+import java.util.function.Supplier;
+
+/**
+ * How the data processed by the {@link DataTransformationPlugin} is split into records, each of which becomes (part
+ * of) a child trace. By default the data is split into lines.
+ */
+public final class RecordFormat {
+
+    private static final byte QUOTE = '"';
+
+    private final Supplier<RecordBoundaryDetector> _detectors;
+    // the delimiter of the records if it is a single byte, used to scan for records in parallel
+    private final byte[] _delimiter;
+    private final boolean _lines;
+
+    private RecordFormat(final Supplier<RecordBoundaryDetector> detectors, final byte[] delimiter, final boolean lines) {
+        _detectors = detectors;
+        _delimiter = delimiter;
+        _lines = lines;
+    }
+
+    /**
+     * @return the format of records ending with a {@link DataTransformationPlugin#LINE_SEPARATOR line separator}
+     */
+    public static RecordFormat lines() {
+        final byte separator = (byte) DataTransformationPlugin.LINE_SEPARATOR;
+        return new RecordFormat(() -> new RecordBoundaryDetector.ByteDelimiter(separator), new byte[] {separator}, true);
+    }
+
+    /**
+     * @param delimiter the bytes ending a record, such as a single {@code 0} for NUL delimited data
+     * @return the format of records ending with the given delimiter
+     */
+    public static RecordFormat delimitedBy(final byte... delimiter) {
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("empty record delimiter");
+        }
+        final byte[] bytes = delimiter.clone();
+        if (bytes.length == 1) {
+            return new RecordFormat(() -> new RecordBoundaryDetector.ByteDelimiter(bytes[0]), bytes, false);
+        }
+        return new RecordFormat(() -> new RecordBoundaryDetector.Delimiter(bytes), null, false);
+    }
+
+    /**
+     * @param length the length of a record in bytes; the last record can be shorter
+     * @return the format of records of a fixed length
+     */
+    public static RecordFormat fixedLength(final int length) {
+        if (length < 1) {
+            throw new IllegalArgumentException("record length must be at least 1: " + length);
+        }
+        return new RecordFormat(() -> new RecordBoundaryDetector.FixedLength(length), null, false);
+    }
+
+    /**
+     * @return the format of CSV records: lines, except for line separators inside a quoted field
+     */
+    public static RecordFormat csv() {
+        final byte separator = (byte) DataTransformationPlugin.LINE_SEPARATOR;
+        return new RecordFormat(() -> new RecordBoundaryDetector.QuotedLines(QUOTE, separator), null, false);
+    }
+
+    /**
+     * @return a new detector for a single pass over data
+     */
+    RecordBoundaryDetector newDetector() {
+        return _detectors.get();
+    }
+
+    /**
+     * @return whether the records end with a single byte delimiter, which can be scanned for in parallel
+     */
+    boolean isSingleByteDelimited() {
+        return _delimiter != null;
+    }
+
+    /**
+     * @return the single byte delimiter of the records, see {@link #isSingleByteDelimited()}
+     */
+    byte singleByteDelimiter() {
+        return _delimiter[0];
+    }
+
+    /**
+     * @return whether the records are lines, which determines the names of the children
+     */
+    boolean isLines() {
+        return _lines;
+    }
+}
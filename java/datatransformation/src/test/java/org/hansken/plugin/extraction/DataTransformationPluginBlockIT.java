@@ -0,0 +1,39 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Scans the inputs in blocks of 64 KiB, which long_lines.txt has lines across, with the CR and LF of one line on
+ * either side of a block boundary. The children are the same as when the data is scanned in a single block.
+ */
+class DataTransformationPluginBlockIT extends EmbeddedExtractionPluginFlits {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new DataTransformationPlugin(DataTransformationSettings.builder()
+            .blockSize(BLOCK_SIZE)
+            .build());
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Splits the inputs into records ending with a CRLF, in blocks of 64 KiB: long_lines.txt has a CRLF of which the CR
+ * ends one block and the LF starts the next. The logs have no CRLF, so each is a single record.
+ */
+class DataTransformationPluginCrlfIT extends EmbeddedExtractionPluginFlits {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new DataTransformationPlugin(DataTransformationSettings.builder()
+            .blockSize(BLOCK_SIZE)
+            .records(RecordFormat.delimitedBy(CR, LF))
+            .build());
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results-crlf");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Splits the inputs into CSV records, in blocks of 64 KiB: the quoted field of long_lines.txt keeps its CRLF in its
+ * record, which spans a block boundary.
+ */
+class DataTransformationPluginCsvIT extends EmbeddedExtractionPluginFlits {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new DataTransformationPlugin(DataTransformationSettings.builder()
+            .blockSize(BLOCK_SIZE)
+            .records(RecordFormat.csv())
+            .build());
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results-csv");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
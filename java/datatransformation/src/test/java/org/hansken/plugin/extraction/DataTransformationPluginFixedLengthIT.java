@@ -0,0 +1,40 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Splits the inputs into records of 5000 bytes, in blocks of 64 KiB which the records of long_lines.txt span.
+ */
+class DataTransformationPluginFixedLengthIT extends EmbeddedExtractionPluginFlits {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int RECORD_LENGTH = 5000;
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new DataTransformationPlugin(DataTransformationSettings.builder()
+            .blockSize(BLOCK_SIZE)
+            .records(RecordFormat.fixedLength(RECORD_LENGTH))
+            .build());
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results-fixed");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
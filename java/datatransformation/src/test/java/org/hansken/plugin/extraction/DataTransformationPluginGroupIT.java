@@ -0,0 +1,40 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Groups the lines into children of at most 4 lines, or up to 16 KiB: the short lines of the logs are grouped by
+ * their number, the long lines of long_lines.txt mostly by their number of bytes.
+ */
+class DataTransformationPluginGroupIT extends EmbeddedExtractionPluginFlits {
+
+    private static final int LINES_PER_CHILD = 4;
+    private static final long BYTES_PER_CHILD = 16 * 1024;
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new DataTransformationPlugin(DataTransformationSettings.builder()
+            .group(LINES_PER_CHILD, BYTES_PER_CHILD)
+            .build());
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results-grouped");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
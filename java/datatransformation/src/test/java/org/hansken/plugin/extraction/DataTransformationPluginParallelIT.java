@@ -0,0 +1,40 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Scans the inputs for lines on 4 threads, in segments of 64 KiB which long_lines.txt has lines across. The children
+ * are the same as when the data is scanned on a single thread.
+ */
+class DataTransformationPluginParallelIT extends EmbeddedExtractionPluginFlits {
+
+    private static final int SCAN_THREADS = 4;
+    private static final int SCAN_SEGMENT_SIZE = 64 * 1024;
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new DataTransformationPlugin(DataTransformationSettings.builder()
+            .parallelScan(SCAN_THREADS, SCAN_SEGMENT_SIZE)
+            .build());
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package org.hansken.plugin.extraction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class LineOffsetsTest {
+
+    private static final String TEXT = "first line\nsecond\n\nfourth line, the longest\nlast";
+
+    @Test
+    void locatesLineInGroup() throws IOException {
+        // a group of the lines after the first, as the data of a child is the range of its lines
+        final byte[] bytes = TEXT.getBytes(UTF_8);
+        final int groupStart = "first line\n".length();
+        final byte[] group = Arrays.copyOfRange(bytes, groupStart, bytes.length);
+        final LineOffsets offsets = new LineOffsets(2);
+        new LineScanner((byte) '\n', 8).scan(new ByteArrayData(bytes), (offset, length) -> {
+            if (offset >= groupStart) {
+                offsets.add(offset - groupStart);
+            }
+        });
+        assertEquals(4, offsets.count());
+
+        final ByteBuffer stored = ByteBuffer.wrap(offsets.toBytes());
+        assertEquals("second\n", line(group, LineOffsets.locate(stored, group.length, 0)));
+        assertEquals("\n", line(group, LineOffsets.locate(stored, group.length, 1)));
+        assertEquals("fourth line, the longest\n", line(group, LineOffsets.locate(stored, group.length, 2)));
+        assertEquals("last", line(group, LineOffsets.locate(stored, group.length, 3)));
+        assertThrows(IndexOutOfBoundsException.class, () -> LineOffsets.locate(stored, group.length, 4));
+    }
+
+    @Test
+    void clearedForNextGroup() {
+        final LineOffsets offsets = new LineOffsets(1);
+        offsets.add(0);
+        offsets.add(10);
+        offsets.clear();
+        offsets.add(0);
+
+        assertEquals(1, offsets.count());
+        assertArrayEquals(new long[] {0, 5}, LineOffsets.locate(ByteBuffer.wrap(offsets.toBytes()), 5, 0));
+    }
+
+    private static String line(final byte[] group, final long[] range) {
+        return new String(group, (int) range[0], (int) range[1], UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding the lines in 64 MiB of data with the {@link LineScanner}, which reads blocks and searches them
+ * eight bytes at a time, to searching the same blocks a byte at a time, and to the loop the scanner replaced, which
+ * read the data a byte at a time with {@code readNBytes(1)}.
+ * <p>
+ * The {@code megabytes} counter gives the throughput in MB/s. Run with {@code mvn -Pbenchmark test
+ * -Dbenchmark=LineScanner}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineScannerBenchmark {
+
+    private static final int DATA_SIZE = 64 * 1024 * 1024;
+    private static final byte SEPARATOR = (byte) DataTransformationPlugin.LINE_SEPARATOR;
+
+    // the average line length in bytes, a JMH parameter (-p lineLength=...), so without the usual field prefix
+    @Param({"16", "80", "4096"})
+    public int lineLength;
+
+    private ByteArrayData _data;
+    private byte[] _block;
+
+    /**
+     * Counts the scanned megabytes, which JMH reports per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // printable text with line lengths spread around the average
+        final Random random = new Random(42);
+        final byte[] bytes = new byte[DATA_SIZE];
+        for (int i = 0; i < DATA_SIZE; i++) {
+            bytes[i] = (byte) (' ' + random.nextInt(95));
+        }
+        for (int i = random.nextInt(2 * lineLength); i < DATA_SIZE; i += 1 + random.nextInt(2 * lineLength)) {
+            bytes[i] = SEPARATOR;
+        }
+        _data = new ByteArrayData(bytes);
+        _block = new byte[LineScanner.DEFAULT_BLOCK_SIZE];
+    }
+
+    @Benchmark
+    public long lineScanner(final Throughput throughput) throws IOException {
+        final long[] lines = new long[1];
+        _data.seek(0);
+        new LineScanner(SEPARATOR).scan(_data, (offset, length) -> lines[0]++);
+        throughput.megabytes += DATA_SIZE / 1e6;
+        return lines[0];
+    }
+
+    @Benchmark
+    public long byteLoop(final Throughput throughput) {
+        long lines = 0;
+        _data.seek(0);
+        // the same blocks as the scanner, compared byte by byte
+        while (_data.remaining() > 0) {
+            final int length = _data.read(_block, (int) Math.min(_block.length, _data.remaining()));
+            for (int i = 0; i < length; i++) {
+                if (_block[i] == SEPARATOR) {
+                    lines++;
+                }
+            }
+        }
+        throughput.megabytes += DATA_SIZE / 1e6;
+        return lines;
+    }
+
+    @Benchmark
+    public long readNBytes(final Throughput throughput) {
+        long lines = 0;
+        _data.seek(0);
+        // the loop as it was before the scanner: an array and a read call for every byte
+        while (_data.remaining() > 0) {
+            if (_data.readNBytes(1)[0] == SEPARATOR) {
+                lines++;
+            }
+        }
+        throughput.megabytes += DATA_SIZE / 1e6;
+        return lines;
+    }
+}
@@ -0,0 +1,211 @@
+package org.hansken.plugin.extraction;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds all occurrences of a fixed set of patterns in a text in a single pass over that text, using the
+ * Aho-Corasick algorithm. The cost of a search depends on the length of the text (and the number of matches),
+ * not on the number of patterns.
+ * <p>
+ * Patterns are matched on {@code char}s, exactly as {@link String#contains(CharSequence)} does. The automaton is
+ * stored in primitive arrays, so it stays compact for a large number of patterns.
+ */
+final class AhoCorasickMatcher implements LocationMatcher {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private final TransitionTable _transitions = new TransitionTable();
+    private int[] _fail = new int[16];
+    // the pattern ending in a state, or NONE
+    private int[] _output = new int[16];
+    // the nearest state on the fail path with an output, or NONE
+    private int[] _outputLink = new int[16];
+    // the states below a state as a linked list, only used while building the automaton
+    private int[] _firstChild = new int[16];
+    private int[] _nextSibling = new int[16];
+    private char[] _label = new char[16];
+    private int _states = 1;
+
+    /**
+     * Builds the automaton for the given patterns. The id of a pattern is its index in the list.
+     *
+     * @param patterns the (non-empty) patterns to search for
+     */
+    AhoCorasickMatcher(final List<String> patterns) {
+        _output[ROOT] = NONE;
+        _firstChild[ROOT] = NONE;
+        for (int id = 0; id < patterns.size(); id++) {
+            addPattern(patterns.get(id), id);
+        }
+        buildFailLinks();
+        // the child lists are no longer needed
+        _firstChild = null;
+        _nextSibling = null;
+        _label = null;
+    }
+
+    /**
+     * Finds the patterns occurring in the given text.
+     *
+     * @param text the text to search
+     * @return the ids of the patterns found in the text, in ascending order and without duplicates
+     */
+    @Override
+    public int[] findAll(final CharSequence text) {
+        int[] matches = new int[4];
+        int count = 0;
+
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            // report the pattern ending here, and the (shorter) patterns ending here found through the fail links
+            int match = _output[state] == NONE ? _outputLink[state] : state;
+            while (match != NONE) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, 2 * count);
+                }
+                matches[count++] = _output[match];
+                match = _outputLink[match];
+            }
+        }
+        return LocationMatcher.distinct(matches, count);
+    }
+
+    private int next(final int state, final char c) {
+        int current = state;
+        while (true) {
+            final int next = _transitions.get(current, c);
+            if (next != NONE) {
+                return next;
+            }
+            if (current == ROOT) {
+                return ROOT;
+            }
+            current = _fail[current];
+        }
+    }
+
+    private void addPattern(final String pattern, final int id) {
+        if (pattern.isEmpty()) {
+            throw new IllegalArgumentException("patterns can not be empty");
+        }
+        int state = ROOT;
+        for (int i = 0; i < pattern.length(); i++) {
+            final int next = _transitions.get(state, pattern.charAt(i));
+            if (next == NONE) {
+                final int created = newState();
+                _transitions.put(state, pattern.charAt(i), created);
+                _label[created] = pattern.charAt(i);
+                _nextSibling[created] = _firstChild[state];
+                _firstChild[state] = created;
+                state = created;
+            }
+            else {
+                state = next;
+            }
+        }
+        _output[state] = id;
+    }
+
+    private int newState() {
+        if (_states == _fail.length) {
+            final int capacity = 2 * _states;
+            _fail = Arrays.copyOf(_fail, capacity);
+            _output = Arrays.copyOf(_output, capacity);
+            _outputLink = Arrays.copyOf(_outputLink, capacity);
+            _firstChild = Arrays.copyOf(_firstChild, capacity);
+            _nextSibling = Arrays.copyOf(_nextSibling, capacity);
+            _label = Arrays.copyOf(_label, capacity);
+        }
+        _output[_states] = NONE;
+        _firstChild[_states] = NONE;
+        return _states++;
+    }
+
+    private void buildFailLinks() {
+        _outputLink[ROOT] = NONE;
+        // breadth first, so the fail link of a state is known before the states below it are visited
+        final int[] queue = new int[_states];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        while (head < tail) {
+            final int state = queue[head++];
+            for (int child = _firstChild[state]; child != NONE; child = _nextSibling[child]) {
+                final int fail = state == ROOT ? ROOT : next(_fail[state], _label[child]);
+                _fail[child] = fail;
+                _outputLink[child] = _output[fail] != NONE ? fail : _outputLink[fail];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Open addressing hash table from (state, character) to the next state.
+     */
+    private static final class TransitionTable {
+        private static final long EMPTY = -1;
+
+        private long[] _keys = newKeys(64);
+        private int[] _values = new int[64];
+        private int _size;
+
+        int get(final int state, final char c) {
+            final long key = key(state, c);
+            final int mask = _keys.length - 1;
+            for (int slot = slot(key, mask); _keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (_keys[slot] == key) {
+                    return _values[slot];
+                }
+            }
+            return NONE;
+        }
+
+        void put(final int state, final char c, final int next) {
+            if (2 * (_size + 1) > _keys.length) {
+                resize();
+            }
+            insert(key(state, c), next);
+            _size++;
+        }
+
+        private void resize() {
+            final long[] keys = _keys;
+            final int[] values = _values;
+            _keys = newKeys(2 * keys.length);
+            _values = new int[2 * values.length];
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    insert(keys[slot], values[slot]);
+                }
+            }
+        }
+
+        private void insert(final long key, final int value) {
+            final int mask = _keys.length - 1;
+            int slot = slot(key, mask);
+            while (_keys[slot] != EMPTY && _keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            _keys[slot] = key;
+            _values[slot] = value;
+        }
+
+        private static long key(final int state, final char c) {
+            return ((long) state << 16) | c;
+        }
+
+        private static int slot(final long key, final int mask) {
+            final long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private static long[] newKeys(final int capacity) {
+            final long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
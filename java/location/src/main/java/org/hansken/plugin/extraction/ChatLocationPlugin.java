@@ -27,6 +27,57 @@ public final class ChatLocationPlugin extends MetaExtractionPlugin {
         "die jonge", LatLong.of(52.0894436, 5.1077982)  // Utrecht Centraal
     );
 
+    /**
+     * How location names are matched on a chat message.
+     */
+    public enum MatchMode {
+        /**
+         * A location name matches anywhere in a message, also inside a longer word.
+         */
+        SUBSTRING,
+        /**
+         * A location name only matches whole words in a message.
+         */
+        WORD
+    }
+
+    private final Gazetteer _gazetteer;
+    // matches all location names on a message at once, the ids are indexes in the gazetteer
+    private final LocationMatcher _matcher;
+
+    public ChatLocationPlugin() {
+        this(defaultGazetteer());
+    }
+
+    /**
+     * Creates the plugin with a different location database, see {@link Gazetteer#load(java.nio.file.Path)}.
+     *
+     * @param gazetteer the location names and their coordinates
+     */
+    public ChatLocationPlugin(final Gazetteer gazetteer) {
+        this(gazetteer, MatchMode.SUBSTRING);
+    }
+
+    /**
+     * Creates the plugin with a different location database and way of matching location names.
+     *
+     * @param gazetteer the location names and their coordinates
+     * @param matchMode how location names are matched on the messages
+     */
+    public ChatLocationPlugin(final Gazetteer gazetteer, final MatchMode matchMode) {
+        _gazetteer = gazetteer;
+        _matcher = matchMode == MatchMode.WORD
+            ? new WordMatcher(gazetteer.names())
+            : new AhoCorasickMatcher(gazetteer.names());
+    }
+
+    /**
+     * @return a gazetteer of the built-in location database
+     */
+    static Gazetteer defaultGazetteer() {
+        return Gazetteer.of(LOCATION_TRANSLATION_DATABASE);
+    }
+
     @Override
     public PluginInfo pluginInfo() {
         final Author author = Author.builder()
@@ -55,13 +106,12 @@ public final class ChatLocationPlugin extends MetaExtractionPlugin {
         // extract the message
         final String message = trace.get("chatMessage.message");
 
-        // try and match the known location on the individual words
-        LOCATION_TRANSLATION_DATABASE.forEach((locationName, gpsLocation) -> {
-            if (message.contains(locationName)) {
-                trace.addType("gps")
-                    .set("gps.application", trace.get("chatMessage.application"))
-                    .set("gps.latlong", gpsLocation);
-            }
-        });
+        // try and match the known locations on the message; the ids found are gazetteer indexes in ascending order,
+        // so the locations are always added sorted by name, whatever order the database was given in
+        for (final int location : _matcher.findAll(message)) {
+            trace.addType("gps")
+                .set("gps.application", trace.get("chatMessage.application"))
+                .set("gps.latlong", _gazetteer.location(location));
+        }
     }
-}
\ No newline at end of file
+}
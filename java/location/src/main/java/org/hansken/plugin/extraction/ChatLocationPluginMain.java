@@ -1,9 +1,25 @@
 package org.hansken.plugin.extraction;
 
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.ChatLocationPlugin.MatchMode;
 import org.hansken.plugin.extraction.runtime.grpc.server.ExtractionPluginServerMain;
 
 public class ChatLocationPluginMain {
+
+    // the system property pointing to a gazetteer file, see Gazetteer.load(Path) for its format
+    private static final String GAZETTEER_PROPERTY = "gazetteer";
+    // the system property selecting how location names are matched, SUBSTRING or WORD
+    private static final String MATCH_MODE_PROPERTY = "matchMode";
+
     public static void main(String... args) throws Exception {
-        ExtractionPluginServerMain.runMain(ChatLocationPlugin::new, args);
+        final String gazetteerFile = System.getProperty(GAZETTEER_PROPERTY);
+        final MatchMode matchMode = MatchMode.valueOf(System.getProperty(MATCH_MODE_PROPERTY, MatchMode.SUBSTRING.name()));
+
+        // load the gazetteer once at startup
+        final Gazetteer gazetteer = gazetteerFile == null
+            ? ChatLocationPlugin.defaultGazetteer()
+            : Gazetteer.load(Path.of(gazetteerFile));
+        ExtractionPluginServerMain.runMain(() -> new ChatLocationPlugin(gazetteer, matchMode), args);
     }
 }
@@ -0,0 +1,298 @@
+package org.hansken.plugin.extraction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.hansken.plugin.extraction.api.LatLong;
+
+/**
+ * A database of location names and their coordinates, sorted by name.
+ * <p>
+ * The names are kept as UTF-8 bytes in a single buffer, which is a memory mapped file when the gazetteer is
+ * {@link #load(Path) loaded} from a file. The coordinates are kept in primitive arrays, so a gazetteer with
+ * millions of entries takes little heap: only a few arrays of primitives, not an object per entry.
+ */
+public final class Gazetteer {
+
+    private static final byte SEPARATOR = '\t';
+    private static final byte LINE_SEPARATOR = '\n';
+    private static final byte COMMENT = '#';
+
+    private final ByteBuffer _names;
+    // per entry, in order of the (UTF-8 encoded) names
+    private final int[] _nameOffsets;
+    private final int[] _nameLengths;
+    private final double[] _latitudes;
+    private final double[] _longitudes;
+
+    private Gazetteer(final ByteBuffer names, final int[] nameOffsets, final int[] nameLengths,
+                      final double[] latitudes, final double[] longitudes) {
+        _names = names;
+        _nameOffsets = nameOffsets;
+        _nameLengths = nameLengths;
+        _latitudes = latitudes;
+        _longitudes = longitudes;
+    }
+
+    /**
+     * Creates a gazetteer from the given locations.
+     *
+     * @param locations the coordinates of each location name
+     * @return the gazetteer
+     */
+    public static Gazetteer of(final Map<String, LatLong> locations) {
+        final Builder builder = new Builder(locations.size());
+        final byte[][] names = new byte[locations.size()][];
+        int index = 0;
+        int size = 0;
+        for (final Map.Entry<String, LatLong> location : locations.entrySet()) {
+            names[index] = location.getKey().getBytes(UTF_8);
+            builder.add(size, names[index].length, location.getValue().latitude(), location.getValue().longitude());
+            size += names[index].length;
+            index++;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (final byte[] name : names) {
+            buffer.put(name);
+        }
+        return builder.build(buffer);
+    }
+
+    /**
+     * Loads a gazetteer from a UTF-8 encoded text file. Each line of the file contains a location name, its
+     * latitude and its longitude, separated by tabs. Empty lines and lines starting with '#' are ignored. If a
+     * name occurs more than once, the last occurrence is used.
+     * <p>
+     * The file is memory mapped, the location names are read from the mapped file when they are needed.
+     *
+     * @param file the file to load
+     * @return the gazetteer
+     * @throws IOException when the file can not be read, or when it is not a valid gazetteer
+     */
+    public static Gazetteer load(final Path file) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("gazetteer is too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        final Builder builder = new Builder(1024);
+        final int size = buffer.limit();
+        int lineNumber = 0;
+        int start = 0;
+        while (start < size) {
+            lineNumber++;
+            int end = start;
+            while (end < size && buffer.get(end) != LINE_SEPARATOR) {
+                end++;
+            }
+            final int lineEnd = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+            if (lineEnd > start && buffer.get(start) != COMMENT) {
+                final int latitude = indexOf(buffer, start, lineEnd, SEPARATOR);
+                final int longitude = latitude < 0 ? -1 : indexOf(buffer, latitude + 1, lineEnd, SEPARATOR);
+                if (longitude < 0 || latitude == start) {
+                    throw new IOException("invalid gazetteer entry on line " + lineNumber + " of " + file);
+                }
+                try {
+                    builder.add(start, latitude - start,
+                        Double.parseDouble(decode(buffer, latitude + 1, longitude - latitude - 1)),
+                        Double.parseDouble(decode(buffer, longitude + 1, lineEnd - longitude - 1)));
+                }
+                catch (final NumberFormatException e) {
+                    throw new IOException("invalid coordinates on line " + lineNumber + " of " + file, e);
+                }
+            }
+            start = end + 1;
+        }
+        return builder.build(buffer);
+    }
+
+    public int size() {
+        return _nameOffsets.length;
+    }
+
+    public String name(final int index) {
+        return decode(_names, _nameOffsets[index], _nameLengths[index]);
+    }
+
+    public LatLong location(final int index) {
+        return LatLong.of(_latitudes[index], _longitudes[index]);
+    }
+
+    /**
+     * @return a view on the names of this gazetteer, in order of their index
+     */
+    public List<String> names() {
+        return new AbstractList<>() {
+            @Override
+            public String get(final int index) {
+                return name(index);
+            }
+
+            @Override
+            public int size() {
+                return Gazetteer.this.size();
+            }
+        };
+    }
+
+    /**
+     * Finds a location by its name.
+     *
+     * @param name the name of the location
+     * @return the index of the location, or a negative number if there is no location with the given name
+     */
+    public int indexOf(final String name) {
+        final byte[] key = name.getBytes(UTF_8);
+        final ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int compare = compare(_names, _nameOffsets[middle], _nameLengths[middle], keyBuffer, 0, key.length);
+            if (compare < 0) {
+                low = middle + 1;
+            }
+            else if (compare > 0) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(final ByteBuffer buffer, final int from, final int to, final byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(final ByteBuffer buffer, final int offset, final int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    // compares the bytes as unsigned values, which orders UTF-8 encoded strings by code point
+    private static int compare(final ByteBuffer left, final int leftOffset, final int leftLength,
+                               final ByteBuffer right, final int rightOffset, final int rightLength) {
+        final int length = Math.min(leftLength, rightLength);
+        for (int i = 0; i < length; i++) {
+            final int compare = Integer.compare(left.get(leftOffset + i) & 0xff, right.get(rightOffset + i) & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(leftLength, rightLength);
+    }
+
+    /**
+     * Collects the entries of a gazetteer in primitive arrays, and sorts them by name.
+     */
+    private static final class Builder {
+        private int[] _nameOffsets;
+        private int[] _nameLengths;
+        private double[] _latitudes;
+        private double[] _longitudes;
+        private int _size;
+
+        Builder(final int capacity) {
+            _nameOffsets = new int[capacity];
+            _nameLengths = new int[capacity];
+            _latitudes = new double[capacity];
+            _longitudes = new double[capacity];
+        }
+
+        void add(final int nameOffset, final int nameLength, final double latitude, final double longitude) {
+            if (_size == _nameOffsets.length) {
+                final int capacity = Math.max(16, 2 * _size);
+                _nameOffsets = Arrays.copyOf(_nameOffsets, capacity);
+                _nameLengths = Arrays.copyOf(_nameLengths, capacity);
+                _latitudes = Arrays.copyOf(_latitudes, capacity);
+                _longitudes = Arrays.copyOf(_longitudes, capacity);
+            }
+            _nameOffsets[_size] = nameOffset;
+            _nameLengths[_size] = nameLength;
+            _latitudes[_size] = latitude;
+            _longitudes[_size] = longitude;
+            _size++;
+        }
+
+        Gazetteer build(final ByteBuffer names) {
+            // sort the entries by name (stable, so of equal names the last one added comes last)
+            final int[] order = new int[_size];
+            for (int i = 0; i < _size; i++) {
+                order[i] = i;
+            }
+            sort(names, order, new int[_size], 0, _size);
+
+            // only keep the last entry of equal names
+            final int[] kept = new int[_size];
+            int count = 0;
+            for (int i = 0; i < _size; i++) {
+                final boolean last = i == _size - 1 || compare(names, order[i], order[i + 1]) != 0;
+                if (last) {
+                    kept[count++] = order[i];
+                }
+            }
+
+            final int[] nameOffsets = new int[count];
+            final int[] nameLengths = new int[count];
+            final double[] latitudes = new double[count];
+            final double[] longitudes = new double[count];
+            for (int i = 0; i < count; i++) {
+                nameOffsets[i] = _nameOffsets[kept[i]];
+                nameLengths[i] = _nameLengths[kept[i]];
+                latitudes[i] = _latitudes[kept[i]];
+                longitudes[i] = _longitudes[kept[i]];
+            }
+            return new Gazetteer(names, nameOffsets, nameLengths, latitudes, longitudes);
+        }
+
+        // merge sort of entry indexes by name
+        private void sort(final ByteBuffer names, final int[] indexes, final int[] scratch, final int from, final int to) {
+            if (to - from < 2) {
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            sort(names, indexes, scratch, from, middle);
+            sort(names, indexes, scratch, middle, to);
+
+            int i = from;
+            int j = middle;
+            for (int k = from; k < to; k++) {
+                if (j >= to || (i < middle && compare(names, indexes[i], indexes[j]) <= 0)) {
+                    scratch[k] = indexes[i++];
+                }
+                else {
+                    scratch[k] = indexes[j++];
+                }
+            }
+            System.arraycopy(scratch, from, indexes, from, to - from);
+        }
+
+        private int compare(final ByteBuffer names, final int left, final int right) {
+            return Gazetteer.compare(names, _nameOffsets[left], _nameLengths[left],
+                names, _nameOffsets[right], _nameLengths[right]);
+        }
+    }
+}
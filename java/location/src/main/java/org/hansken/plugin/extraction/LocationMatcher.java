@@ -0,0 +1,36 @@
+package org.hansken.plugin.extraction;
+
+import java.util.Arrays;
+
+/**
+ * Finds location names in chat messages. The id of a location name is its index in the list of names the
+ * matcher was created with.
+ */
+interface LocationMatcher {
+
+    /**
+     * Finds the location names occurring in the given text.
+     *
+     * @param text the text to search
+     * @return the ids of the names found in the text, in ascending order and without duplicates
+     */
+    int[] findAll(CharSequence text);
+
+    /**
+     * Sorts the first {@code count} values and removes the duplicates.
+     *
+     * @param values the values, which are sorted in place
+     * @param count the number of values
+     * @return the distinct values, in ascending order
+     */
+    static int[] distinct(final int[] values, final int count) {
+        Arrays.sort(values, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || values[distinct - 1] != values[i]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, distinct);
+    }
+}
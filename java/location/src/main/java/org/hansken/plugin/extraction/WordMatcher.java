@@ -0,0 +1,175 @@
+package org.hansken.plugin.extraction;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds location names which occur as whole words in a text. A name of more than one word, such as 'die jonge',
+ * matches the same words in a text when they are separated by anything other than letters and digits.
+ * <p>
+ * Each text is cut into words once, after which every sequence of up to the maximum number of words in a name is
+ * looked up in a hash index of the names. The cost of a search therefore depends on the length of the text, not on
+ * the number of names. The index is an open addressing table which is probed with a hash computed over the words
+ * in the text, so no strings are created while searching.
+ */
+final class WordMatcher implements LocationMatcher {
+
+    private static final char WORD_SEPARATOR = ' ';
+
+    // the names with their words separated by a single space, and their ids, per slot in the table
+    private final String[] _keys;
+    private final int[] _ids;
+    private final int _mask;
+    // the maximum number of words in a name
+    private final int _maxWords;
+
+    /**
+     * Builds the index for the given names. The id of a name is its index in the list.
+     *
+     * @param names the names to search for
+     */
+    WordMatcher(final List<String> names) {
+        int capacity = 16;
+        while (capacity < 2 * names.size()) {
+            capacity *= 2;
+        }
+        _keys = new String[capacity];
+        _ids = new int[capacity];
+        _mask = capacity - 1;
+
+        int maxWords = 0;
+        int[] starts = new int[4];
+        int[] ends = new int[4];
+        for (int id = 0; id < names.size(); id++) {
+            final String name = names.get(id);
+            final int words = words(name, starts, ends);
+            if (words > starts.length) {
+                starts = new int[words];
+                ends = new int[words];
+                words(name, starts, ends);
+            }
+            // a name without any words can never be matched
+            if (words > 0) {
+                insert(key(name, starts, ends, words), id);
+                maxWords = Math.max(maxWords, words);
+            }
+        }
+        _maxWords = maxWords;
+    }
+
+    @Override
+    public int[] findAll(final CharSequence text) {
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        final int words = words(text, starts, ends);
+        if (words > starts.length) {
+            starts = new int[words];
+            ends = new int[words];
+            words(text, starts, ends);
+        }
+
+        int[] matches = new int[4];
+        int count = 0;
+        for (int first = 0; first < words; first++) {
+            // extend the sequence of words starting at first one word at a time, along with its hash
+            int hash = 0;
+            int length = -1;
+            for (int last = first; last < words && last - first < _maxWords; last++) {
+                if (last > first) {
+                    hash = 31 * hash + WORD_SEPARATOR;
+                }
+                for (int i = starts[last]; i < ends[last]; i++) {
+                    hash = 31 * hash + text.charAt(i);
+                }
+                length += 1 + ends[last] - starts[last];
+
+                for (int slot = slot(hash); _keys[slot] != null; slot = (slot + 1) & _mask) {
+                    final String key = _keys[slot];
+                    if (key.length() == length && key.hashCode() == hash
+                        && equals(key, text, starts, ends, first, last)) {
+                        if (count == matches.length) {
+                            matches = Arrays.copyOf(matches, 2 * count);
+                        }
+                        matches[count++] = _ids[slot];
+                    }
+                }
+            }
+        }
+        return LocationMatcher.distinct(matches, count);
+    }
+
+    private void insert(final String key, final int id) {
+        // names which have the same words all get a slot of their own, a lookup finds all of them
+        int slot = slot(key.hashCode());
+        while (_keys[slot] != null) {
+            slot = (slot + 1) & _mask;
+        }
+        _keys[slot] = key;
+        _ids[slot] = id;
+    }
+
+    private int slot(final int hash) {
+        final int spread = hash * 0x9E3779B9;
+        return (spread ^ (spread >>> 16)) & _mask;
+    }
+
+    // compares a key to the words first up to and including last of a text
+    private static boolean equals(final String key, final CharSequence text, final int[] starts, final int[] ends,
+                                  final int first, final int last) {
+        int k = 0;
+        for (int word = first; word <= last; word++) {
+            if (word > first && key.charAt(k++) != WORD_SEPARATOR) {
+                return false;
+            }
+            for (int i = starts[word]; i < ends[word]; i++) {
+                if (key.charAt(k++) != text.charAt(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String key(final String name, final int[] starts, final int[] ends, final int words) {
+        final StringBuilder key = new StringBuilder(name.length());
+        for (int word = 0; word < words; word++) {
+            if (word > 0) {
+                key.append(WORD_SEPARATOR);
+            }
+            key.append(name, starts[word], ends[word]);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Finds the words in a text: the runs of letters and digits. The bounds of at most {@code starts.length} words
+     * are stored in {@code starts} and {@code ends}.
+     *
+     * @return the number of words in the text, which may be more than the number of bounds stored
+     */
+    private static int words(final CharSequence text, final int[] starts, final int[] ends) {
+        int words = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (!isWordChar(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            final int start = i;
+            while (i < text.length() && isWordChar(text.charAt(i))) {
+                i++;
+            }
+            if (words < starts.length) {
+                starts[words] = start;
+                ends[words] = i;
+            }
+            words++;
+        }
+        return words;
+    }
+
+    private static boolean isWordChar(final char c) {
+        // surrogates are taken as part of a word, so letters outside the basic multilingual plane are not split
+        return Character.isLetterOrDigit(c) || Character.isSurrogate(c);
+    }
+}
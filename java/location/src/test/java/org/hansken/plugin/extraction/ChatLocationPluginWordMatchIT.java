@@ -0,0 +1,37 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.ChatLocationPlugin.MatchMode;
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Runs the location fixtures with whole word matching. The chat logs give the same results as with substring
+ * matching, but the names inside longer words in the words.txt messages, such as 'scrum' in 'scrummage', are not
+ * found.
+ */
+class ChatLocationPluginWordMatchIT extends EmbeddedExtractionPluginFlits {
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new ChatLocationPlugin(ChatLocationPlugin.defaultGazetteer(), MatchMode.WORD);
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("results-word-match");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
\ No newline at end of file
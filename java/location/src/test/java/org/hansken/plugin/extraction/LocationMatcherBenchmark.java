@@ -0,0 +1,99 @@
+package org.hansken.plugin.extraction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares matching a chat message against all location names with the {@link AhoCorasickMatcher} to calling
+ * {@link String#contains(CharSequence)} for every name, as the plugin used to do.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocationMatcherBenchmark {
+
+    private static final int MESSAGES = 64;
+
+    // the number of location names, a JMH parameter (-p names=...), so without the usual field prefix
+    @Param({"10", "10000", "1000000"})
+    public int names;
+
+    private List<String> _locationNames;
+    private AhoCorasickMatcher _matcher;
+    private List<String> _messages;
+    private int _message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(42);
+        _locationNames = new ArrayList<>(names);
+        for (int i = 0; i < names; i++) {
+            _locationNames.add(word(random, 5 + random.nextInt(8)));
+        }
+        _matcher = new AhoCorasickMatcher(_locationNames);
+
+        // messages of about 100 characters, every other one containing a location name
+        _messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            final StringBuilder message = new StringBuilder();
+            while (message.length() < 100) {
+                message.append(word(random, 2 + random.nextInt(8))).append(' ');
+            }
+            if (i % 2 == 0) {
+                message.append(_locationNames.get(random.nextInt(names)));
+            }
+            _messages.add(message.toString());
+        }
+    }
+
+    @Benchmark
+    public int[] ahoCorasick() {
+        return _matcher.findAll(nextMessage());
+    }
+
+    @Benchmark
+    public int[] contains() {
+        final String message = nextMessage();
+        final int[] found = new int[names];
+        int count = 0;
+        for (int i = 0; i < names; i++) {
+            if (message.contains(_locationNames.get(i))) {
+                found[count++] = i;
+            }
+        }
+        return LocationMatcher.distinct(found, count);
+    }
+
+    private String nextMessage() {
+        _message = (_message + 1) % MESSAGES;
+        return _messages.get(_message);
+    }
+
+    private static String word(final Random random, final int length) {
+        final char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
@@ -0,0 +1,244 @@
+package org.hansken.plugin.extraction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hansken.plugin.extraction.Utils.TableRow;
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * A table parsed from CSV data, stored in columns. The bytes of all values are stored in a single array, in the
+ * order of the data and without separators, and each column has an array with the end offset of its value in every
+ * row, so a row costs four bytes per column on top of its values. Values are only decoded when they are requested,
+ * through a {@link TableRow} view on a row.
+ * <p>
+ * The data is parsed in a single pass by a state machine, which splits rows on line separators and values on commas,
+ * except when they are between quotes. Like before, the quotes are kept in the values.
+ */
+final class CsvTable {
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int INITIAL_ROWS = 1024;
+    private static final byte QUOTE = '"';
+    private static final byte SEPARATOR = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final String[] _columnNames;
+    private final Map<String, Integer> _columnIndexes;
+    private final byte[] _values;
+    private final int[][] _ends;
+    private final int _rowCount;
+
+    private CsvTable(final String[] columnNames, final byte[] values, final int[][] ends, final int rowCount) {
+        _columnNames = columnNames;
+        _columnIndexes = new HashMap<>();
+        for (int column = 0; column < columnNames.length; column++) {
+            _columnIndexes.putIfAbsent(columnNames[column], column);
+        }
+        _values = values;
+        _ends = ends;
+        _rowCount = rowCount;
+    }
+
+    /**
+     * Parses a table from the remaining CSV data. The first row contains the column names.
+     *
+     * @param data the CSV data
+     * @return the parsed table
+     * @throws IOException when the data could not be read or is not a valid table
+     */
+    static CsvTable parse(final RandomAccessData data) throws IOException {
+        final long size = data.remaining();
+        if (size > Integer.MAX_VALUE - BLOCK_SIZE) {
+            throw new IOException("Table too large to parse: " + size + " bytes");
+        }
+
+        final Parser parser = new Parser((int) size);
+        final byte[] block = new byte[(int) Math.min(BLOCK_SIZE, size)];
+        while (data.remaining() > 0) {
+            final int length = (int) Math.min(block.length, data.remaining());
+            if (data.read(block, length) != length) {
+                throw new EOFException("Could not read " + length + " bytes of the table");
+            }
+            parser.accept(block, length);
+        }
+        return parser.finish();
+    }
+
+    int getRowCount() {
+        return _rowCount;
+    }
+
+    /**
+     * Gets a row of the table by its id. Like the internal row ids of the QuickLook tables, the ids start at 1, so a
+     * {@code file_id} of a thumbnail is the id of its row in the files table.
+     *
+     * @param id the id of the row, the first row (after the column names) has id 1
+     * @return a view on the row, or {@code null} if there is no row with this id
+     */
+    TableRow getRow(final int id) {
+        if (id < 1 || id > _rowCount) {
+            return null;
+        }
+        return new TableRow(this, id - 1);
+    }
+
+    int getColumnCount() {
+        return _columnNames.length;
+    }
+
+    String getColumnName(final int column) {
+        return _columnNames[column];
+    }
+
+    /**
+     * Gets the index of a column by its name.
+     *
+     * @param name the name of the column
+     * @return the index of the column, or -1 if there is no column with this name
+     */
+    int getColumnIndex(final String name) {
+        final Integer column = _columnIndexes.get(name);
+        return column == null ? -1 : column;
+    }
+
+    /**
+     * Decodes a value of the table.
+     *
+     * @param row the index of the row, counting from 0
+     * @param column the index of the column
+     * @return the value, decoded as UTF-8
+     */
+    String getValue(final int row, final int column) {
+        final int start;
+        if (column > 0) {
+            start = _ends[column - 1][row];
+        }
+        else if (row > 0) {
+            start = _ends[_ends.length - 1][row - 1];
+        }
+        else {
+            start = 0;
+        }
+        return new String(_values, start, _ends[column][row] - start, UTF_8);
+    }
+
+    /**
+     * The state machine parsing the table, fed with the data block by block.
+     */
+    private static final class Parser {
+        private final byte[] _values;
+        private int _length;
+        private String[] _columnNames;
+        // the end of each value of the first row, while the column names are not known yet
+        private int[] _headerEnds = new int[16];
+        private int[][] _ends;
+        private int _rows;
+        private int _column;
+        private boolean _quoted;
+        private boolean _recordStarted;
+        private boolean _afterCarriageReturn;
+
+        Parser(final int size) {
+            _values = new byte[size];
+        }
+
+        void accept(final byte[] block, final int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                final byte b = block[i];
+                final boolean afterCarriageReturn = _afterCarriageReturn;
+                _afterCarriageReturn = false;
+                if (_quoted) {
+                    _quoted = b != QUOTE;
+                    append(b);
+                }
+                else if (b == SEPARATOR) {
+                    endValue();
+                }
+                else if (b == CR) {
+                    endRecord();
+                    _afterCarriageReturn = true;
+                }
+                else if (b == LF) {
+                    // the \n of \r\n does not end another (empty) record
+                    if (!afterCarriageReturn) {
+                        endRecord();
+                    }
+                }
+                else {
+                    _quoted = b == QUOTE;
+                    append(b);
+                }
+            }
+        }
+
+        CsvTable finish() throws IOException {
+            endRecord();
+            if (_columnNames == null) {
+                throw new IOException("Table has no column names");
+            }
+            return new CsvTable(_columnNames, _values, _ends, _rows);
+        }
+
+        private void append(final byte b) {
+            _recordStarted = true;
+            // values in columns without a name are dropped
+            if (_columnNames == null || _column < _columnNames.length) {
+                _values[_length++] = b;
+            }
+        }
+
+        private void endValue() {
+            _recordStarted = true;
+            if (_columnNames == null) {
+                if (_column == _headerEnds.length) {
+                    _headerEnds = Arrays.copyOf(_headerEnds, 2 * _column);
+                }
+                _headerEnds[_column] = _length;
+            }
+            else if (_column < _columnNames.length) {
+                if (_rows == _ends[_column].length) {
+                    _ends[_column] = Arrays.copyOf(_ends[_column], 2 * _rows);
+                }
+                _ends[_column][_rows] = _length;
+            }
+            _column++;
+        }
+
+        private void endRecord() throws IOException {
+            // empty lines are skipped
+            if (!_recordStarted) {
+                return;
+            }
+            endValue();
+            if (_columnNames == null) {
+                endHeader();
+            }
+            else if (_column < _columnNames.length) {
+                throw new IOException("Row " + (_rows + 1) + " has " + _column + " values instead of " + _columnNames.length);
+            }
+            else {
+                _rows++;
+            }
+            _column = 0;
+            _recordStarted = false;
+        }
+
+        private void endHeader() {
+            _columnNames = new String[_column];
+            _ends = new int[_column][INITIAL_ROWS];
+            int start = 0;
+            for (int column = 0; column < _column; column++) {
+                _columnNames[column] = new String(_values, start, _headerEnds[column] - start, UTF_8).intern();
+                start = _headerEnds[column];
+            }
+            // the values of the rows are stored from the start
+            _length = 0;
+        }
+    }
+}
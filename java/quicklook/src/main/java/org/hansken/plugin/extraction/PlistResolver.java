@@ -0,0 +1,122 @@
+package org.hansken.plugin.extraction;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.hansken.plugin.extraction.api.SearchTrace;
+import org.hansken.plugin.extraction.api.TraceSearcher;
+
+/**
+ * Resolves the plist traces with the file info of the files in a thumbnail cache by their names, in a few searches
+ * for many names at once instead of a search per file. With more than one thread, the searches are issued
+ * concurrently on a thread pool which is created once and shared by all traces resolved with this resolver.
+ */
+final class PlistResolver {
+    /**
+     * The default number of names searched for in a single search.
+     */
+    static final int DEFAULT_BATCH_SIZE = 64;
+    /**
+     * The default number of searches issued at the same time.
+     */
+    static final int DEFAULT_THREADS = 4;
+
+    private static final String PLIST_QUERY = "data.raw.fileType='Binary Plist' AND %s";
+
+    private final int _batchSize;
+    // issues the searches, or null if they are issued one after the other on the calling thread
+    private final ExecutorService _executor;
+
+    PlistResolver(final int batchSize, final int threads) {
+        _batchSize = batchSize;
+        // daemon threads, the plugin has no life cycle to shut the pool down at
+        _executor = threads > 1
+            ? Executors.newFixedThreadPool(threads, runnable -> {
+                final Thread thread = new Thread(runnable, "plist-resolver");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+    }
+
+    /**
+     * Creates the query for a single plist trace, as used before plist traces were resolved in batches.
+     *
+     * @param name the name of the plist trace
+     * @return the query for the plist trace
+     */
+    static String query(final String name) {
+        return format(PLIST_QUERY, format("name='%s'", name));
+    }
+
+    /**
+     * Resolves plist traces by their names. If there is more than one trace with a name, the first one found is used.
+     *
+     * @param searcher the searcher to search with
+     * @param names the names of the plist traces
+     * @return the plist traces found by their names, names without a trace are missing
+     * @throws ExecutionException when a search fails
+     * @throws InterruptedException when interrupted while searching
+     */
+    Map<String, SearchTrace> resolve(final TraceSearcher searcher, final Collection<String> names)
+        throws ExecutionException, InterruptedException {
+        final List<String> distinctNames = names.stream().distinct().collect(Collectors.toList());
+        final Set<String> wanted = Set.copyOf(distinctNames);
+        // a single search is issued on the calling thread
+        final boolean concurrent = _executor != null && distinctNames.size() > _batchSize;
+        final List<Future<List<SearchTrace>>> searches = new ArrayList<>();
+        try {
+            final Map<String, SearchTrace> traces = new HashMap<>();
+            for (int from = 0; from < distinctNames.size(); from += _batchSize) {
+                final List<String> batch = distinctNames.subList(from, Math.min(from + _batchSize, distinctNames.size()));
+                if (!concurrent) {
+                    addTraces(traces, wanted, search(searcher, batch));
+                }
+                else {
+                    searches.add(_executor.submit(() -> search(searcher, batch)));
+                }
+            }
+            for (final Future<List<SearchTrace>> search : searches) {
+                addTraces(traces, wanted, search.get());
+            }
+            return traces;
+        }
+        finally {
+            // searches still pending after a failure are not needed anymore
+            for (final Future<List<SearchTrace>> search : searches) {
+                search.cancel(true);
+            }
+        }
+    }
+
+    private static List<SearchTrace> search(final TraceSearcher searcher, final List<String> names)
+        throws ExecutionException, InterruptedException {
+        final String query = format(PLIST_QUERY, names.stream()
+            .map(name -> format("name='%s'", name))
+            .collect(Collectors.joining(" OR ", "(", ")")));
+        return searcher.search(query, names.size())
+            .getTraces()
+            .collect(Collectors.toList());
+    }
+
+    private static void addTraces(final Map<String, SearchTrace> traces, final Set<String> wanted,
+                                  final List<SearchTrace> found) {
+        for (final SearchTrace trace : found) {
+            final String name = trace.get("name");
+            if (wanted.contains(name)) {
+                traces.putIfAbsent(name, trace);
+            }
+        }
+    }
+}
@@ -2,40 +2,40 @@ package org.hansken.plugin.extraction;
 
 import static java.lang.String.format;
 
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
-import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.configuration2.plist.XMLPropertyListConfiguration;
 import org.hansken.plugin.extraction.Utils.TableRow;
 import org.hansken.plugin.extraction.api.Author;
 import org.hansken.plugin.extraction.api.DataContext;
+import org.hansken.plugin.extraction.api.DataWriter;
 import org.hansken.plugin.extraction.api.DeferredExtractionPlugin;
 import org.hansken.plugin.extraction.api.MaturityLevel;
 import org.hansken.plugin.extraction.api.PluginId;
 import org.hansken.plugin.extraction.api.PluginInfo;
+import org.hansken.plugin.extraction.api.PluginResources;
 import org.hansken.plugin.extraction.api.RandomAccessData;
 import org.hansken.plugin.extraction.api.SearchTrace;
 import org.hansken.plugin.extraction.api.Trace;
 import org.hansken.plugin.extraction.api.TraceSearcher;
 
-import static org.hansken.plugin.extraction.Utils.convertRGBAToABGR;
 import static org.hansken.plugin.extraction.Utils.createBufferedImage;
 import static org.hansken.plugin.extraction.Utils.getDateFromMacAbsoluteTime;
 import static org.hansken.plugin.extraction.Utils.getDateStringInUTC;
 import static org.hansken.plugin.extraction.Utils.getIntProperty;
-import static org.hansken.plugin.extraction.Utils.getPngImageAsInputStream;
+import static org.hansken.plugin.extraction.Utils.getPngImage;
 import static org.hansken.plugin.extraction.util.ArgChecks.argNotNull;
 
 /**
@@ -51,6 +51,49 @@ public final class QuickLookPlugin implements DeferredExtractionPlugin {
     private static final String BITMAP_DATA_LENGTH = "bitmapdata_length";
     private static final String DATABASE_NAME = "index.sqlite";
 
+    private final int _encodeThreads;
+    private final long _encodeBytes;
+    // encodes thumbnails on multiple threads, or null if thumbnails are encoded on the thread reading them
+    private final ExecutorService _encoder;
+    private final PlistResolver _plistResolver;
+
+    /**
+     * Creates the plugin, encoding the thumbnails on the thread reading them.
+     */
+    public QuickLookPlugin() {
+        this(1, ThumbnailPipeline.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates the plugin, encoding the thumbnails on a pool of threads if more than one thread is given.
+     *
+     * @param encodeThreads the number of threads encoding thumbnails
+     * @param encodeBytes the maximum number of bytes of bitmaps read for the thumbnails being encoded
+     */
+    public QuickLookPlugin(final int encodeThreads, final long encodeBytes) {
+        this(encodeThreads, encodeBytes, PlistResolver.DEFAULT_THREADS, PlistResolver.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates the plugin, encoding the thumbnails on a pool of threads if more than one thread is given, and
+     * resolving the plist traces of the files in concurrent searches.
+     *
+     * @param encodeThreads the number of threads encoding thumbnails
+     * @param encodeBytes the maximum number of bytes of bitmaps read for the thumbnails being encoded
+     * @param searchThreads the number of searches for plist traces issued at the same time
+     * @param searchBatchSize the number of plist traces searched for in a single search
+     */
+    public QuickLookPlugin(final int encodeThreads, final long encodeBytes, final int searchThreads, final int searchBatchSize) {
+        if (encodeThreads < 1 || encodeBytes < 1 || searchThreads < 1 || searchBatchSize < 1) {
+            throw new IllegalArgumentException("encodeThreads, encodeBytes, searchThreads and searchBatchSize must be at least 1: "
+                + encodeThreads + ", " + encodeBytes + ", " + searchThreads + ", " + searchBatchSize);
+        }
+        _encodeThreads = encodeThreads;
+        _encodeBytes = encodeBytes;
+        _encoder = encodeThreads > 1 ? ThumbnailPipeline.newEncoderPool(encodeThreads) : null;
+        _plistResolver = new PlistResolver(searchBatchSize, searchThreads);
+    }
+
     @Override
     public PluginInfo pluginInfo() {
         final Author author = Author.builder()
@@ -62,7 +105,7 @@ public final class QuickLookPlugin implements DeferredExtractionPlugin {
         // NOTE: This is the PluginInfo for DeferredExtractionPlugin, with the possibility to set deferredIterations.
         // deferredIterations has a default value of 1, so even when deferredIterations are not set explicitly,
         // the plugin is deferred at least for one extraction cycle *after* all the other extractions have finished.
-        return PluginInfo.builderFor(this)
+        final PluginInfo.Builder builder = PluginInfo.builderFor(this)
             .id(new PluginId("nfi.nl", "picture", "QuickLookPluginJava"))
             .pluginVersion("1.0.0")
             .description("Example Extraction Plugin: This plugin extracts thumbnails from thumbnail.data and " +
@@ -72,8 +115,15 @@ public final class QuickLookPlugin implements DeferredExtractionPlugin {
             .webpageUrl("https://hansken.org")
             // TODO: HANSKEN-15568: Should also match "AND file.path:com.apple.QuickLook.thumbnailcache"
             .hqlMatcher("file.name=thumbnails.data AND $data.type=raw")
-            .license("Apache License, Version 2.0")
-            .build();
+            .license("Apache License, Version 2.0");
+
+        // the thumbnails are encoded on multiple cores when encoding in parallel
+        if (_encodeThreads > 1) {
+            builder.resources(PluginResources.builder()
+                .maximumCpu(_encodeThreads)
+                .build());
+        }
+        return builder.build();
     }
 
     @Override
@@ -111,59 +161,78 @@ public final class QuickLookPlugin implements DeferredExtractionPlugin {
             .toAbsolutePath(); // Make sure this is the very absolute path of the trace in the project
     }
 
-    private Map<Integer, TableRow> parseDatabaseTable(final SearchTrace searchTrace) throws IOException {
-        final Map<Integer, TableRow> tableRows = new HashMap<>();
-
-        final RandomAccessData data = searchTrace.getData("raw");
-        final Scanner scanner = new Scanner(new String(data.readNBytes((int) data.remaining())));
-        final String[] keys = scanner.nextLine().split(",");
-
-        int idCounter = 1; // QuickLook Files table internal row id starts with index 1!
-        while (scanner.hasNext()) {
-            final String nextLine = scanner.nextLine();
-            // Regex matches all commas which are not between quotes
-            final String[] values = nextLine.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-            final Map<String, String> properties = IntStream.range(0, keys.length)
-                .boxed()
-                .collect(Collectors.toMap(i -> keys[i], i -> values[i]));
-
-            tableRows.put(idCounter, new TableRow(properties));
-            idCounter++;
-        }
-
-        return tableRows;
+    private CsvTable parseDatabaseTable(final SearchTrace searchTrace) throws IOException {
+        return CsvTable.parse(searchTrace.getData("raw"));
     }
 
     private void addChildTraces(final Trace trace, final TraceSearcher searcher, final DataContext dataContext,
-                                final Map<Integer, TableRow> thumbnails, final Map<Integer, TableRow> files)
+                                final CsvTable thumbnails, final CsvTable files)
         throws IOException, ExecutionException, InterruptedException {
-        int childIndex = 0;
-        final Set<Integer> unusedFileIndexes = new HashSet<>(files.keySet()); // use this to later add traces w/o thumb data
-        final RandomAccessData thumbnailsData = dataContext.data();
-        for (final TableRow thumbnailInfo : thumbnails.values()) {
-            final TableRow fileInfo = getFileInfo(files, thumbnailInfo, unusedFileIndexes);
-
-            addChildTrace(trace, thumbnailInfo, fileInfo,
-                parseFileInfoPlist(searcher, fileInfo),
-                getBufferedImage(thumbnailsData, thumbnailInfo), childIndex);
+        // Resolve the plist traces of all files up front, in a few concurrent searches
+        final List<String> plistNames = new ArrayList<>(files.getRowCount());
+        for (int id = 1; id <= files.getRowCount(); id++) {
+            plistNames.add(getPlistName(files.getRow(id)));
+        }
+        final Map<String, SearchTrace> plistTraces = _plistResolver.resolve(searcher, plistNames);
 
-            childIndex++;
+        int childIndex = 0;
+        final BitSet unusedFileIndexes = new BitSet(); // use this to later add traces w/o thumb data
+        unusedFileIndexes.set(1, files.getRowCount() + 1);
+        // A window is at most half the bytes in flight, so the next window can be read while the previous is encoded
+        final int windowBytes = (int) Math.max(1, Math.min(ThumbnailReadPlanner.DEFAULT_WINDOW_BYTES, _encodeBytes / 2));
+        final ThumbnailReadPlanner reads = new ThumbnailReadPlanner(dataContext.data(), windowBytes,
+            ThumbnailReadPlanner.DEFAULT_MAX_GAP);
+        // The thumbnails are read a window at a time in the order of their offsets, encoded to png by the pipeline
+        // and added as child traces here, in the order of the table
+        try (ThumbnailPipeline pipeline = new ThumbnailPipeline(_encoder, _encodeThreads, _encodeBytes)) {
+            int first = 1;
+            while (first <= thumbnails.getRowCount()) {
+                int last = first;
+                for (; last <= thumbnails.getRowCount() && !reads.isFull(); last++) {
+                    final TableRow thumbnailInfo = thumbnails.getRow(last);
+                    reads.plan(getIntProperty(thumbnailInfo, BITMAP_DATA_OFFSET), getIntProperty(thumbnailInfo, BITMAP_DATA_LENGTH));
+                }
+                // The bitmaps of a window share its buffers, which are released with the last thumbnail of the
+                // window: room is made for them before reading, and they are held by that last thumbnail
+                final long readBytes = reads.readBytes();
+                pipeline.reserve(readBytes);
+                final ByteBuffer[] bitmaps = reads.read();
+
+                for (int id = first; id < last; id++) {
+                    final TableRow thumbnailInfo = thumbnails.getRow(id);
+                    final TableRow fileInfo = getFileInfo(files, thumbnailInfo, unusedFileIndexes);
+                    final Map<String, String> fileInfoPlist = parseFileInfoPlist(searcher, plistTraces, fileInfo);
+
+                    // The bitmap is RGBA, it is encoded as it is, so it is neither copied nor converted
+                    final ByteBuffer bitmap = bitmaps[id - first];
+                    final int width = getThumbnailWidth(thumbnailInfo);
+                    final int height = getIntProperty(thumbnailInfo, THUMB_HEIGHT);
+                    final int counter = childIndex;
+                    pipeline.submit(id == last - 1 ? readBytes : 0,
+                        () -> getPngImage(createBufferedImage(bitmap, width, height))::writeTo,
+                        png -> addChildTrace(trace, thumbnailInfo, fileInfo, fileInfoPlist, png, counter));
+
+                    childIndex++;
+                }
+                first = last;
+            }
+            pipeline.finish();
         }
 
         // Apply the values in unusedFileIndexes to add child-trac
         // es which have no thumbnail data available anymore
-        for (final Integer index : unusedFileIndexes) {
-            final TableRow fileInfo = files.get(index);
-            addChildTrace(trace, null, fileInfo, parseFileInfoPlist(searcher, fileInfo), null, childIndex);
+        for (int index = unusedFileIndexes.nextSetBit(0); index >= 0; index = unusedFileIndexes.nextSetBit(index + 1)) {
+            final TableRow fileInfo = files.getRow(index);
+            addChildTrace(trace, null, fileInfo, parseFileInfoPlist(searcher, plistTraces, fileInfo), null, childIndex);
             childIndex++;
         }
     }
 
     private void addChildTrace(final Trace trace, final TableRow thumbnail, final TableRow fileInfo,
-                               final Map<String, String> fileInfoPlist, final BufferedImage bufferedImage,
+                               final Map<String, String> fileInfoPlist, final DataWriter png,
                                final int counter) throws IOException {
         trace.newChild("thumb-" + counter, thumbnailTrace -> {
-            if (bufferedImage != null) {
+            if (png != null) {
                 thumbnailTrace.addType("data")
                     .set("data.raw.mimeClass", "picture")
                     .set("data.raw.mimeType", "image/png");
@@ -180,50 +249,35 @@ public final class QuickLookPlugin implements DeferredExtractionPlugin {
             // For some files there is no thumbnail info present in the cache, so enable skipping this part
             if (thumbnail != null) {
                 final Trace picture = thumbnailTrace.addType("picture");
-                thumbnail.getProperties().forEach((key, value) -> {
+                thumbnail.forEachProperty((key, value) -> {
                     picture.set("picture.misc." + key,
                         key.equals("last_hit_date") ? getDateStringInUTC(getDateFromMacAbsoluteTime(value)) : value);
                 });
             }
 
             // For some files there is no thumbnail data present in the cache, so enable skipping this part
-            if (bufferedImage != null) {
-                thumbnailTrace.setData("raw", getPngImageAsInputStream(bufferedImage));
+            if (png != null) {
+                thumbnailTrace.setData("raw", png);
             }
         });
     }
 
-    private BufferedImage getBufferedImage(final RandomAccessData thumbnailsData, final TableRow thumbnailInfo) throws IOException {
+    private int getThumbnailWidth(final TableRow thumbnailInfo) {
         final int bitsPerPixel = getIntProperty(thumbnailInfo, BITS_PER_PIXEL);
         final int bytesPerRow = getIntProperty(thumbnailInfo, BYTES_PER_ROW);
-        final int pixelsPerRow = bytesPerRow / (bitsPerPixel / 8); // pixelsPerRow is the thumbnail's width
-        final int thumbHeight = getIntProperty(thumbnailInfo, THUMB_HEIGHT);
-
-        return createBufferedImage(getThumbnailData(thumbnailsData, thumbnailInfo), pixelsPerRow, thumbHeight);
-    }
-
-    private byte[] getThumbnailData(final RandomAccessData thumbnailsData, final TableRow thumbnailInfo) throws IOException {
-        final int dataOffset = getIntProperty(thumbnailInfo, BITMAP_DATA_OFFSET);
-        final int dataLength = getIntProperty(thumbnailInfo, BITMAP_DATA_LENGTH);
-
-        // Read thumbnail data from the bitmap
-        final byte[] bufferRGBA = new byte[dataLength];
-        thumbnailsData.seek(dataOffset);
-        thumbnailsData.read(bufferRGBA, dataLength);
-
-        return convertRGBAToABGR(bufferRGBA);
+        return bytesPerRow / (bitsPerPixel / 8); // pixelsPerRow is the thumbnail's width
     }
 
-    private Map<String, String> parseFileInfoPlist(final TraceSearcher searcher, final TableRow fileInfo)
+    private Map<String, String> parseFileInfoPlist(final TraceSearcher searcher, final Map<String, SearchTrace> plistTraces,
+                                                   final TableRow fileInfo)
         throws ExecutionException, InterruptedException, IOException {
         final Map<String, String> result = new HashMap<>();
 
-        // Get the plist trace by its name which is known by the fileInfo property "version"
-        final String plistName = fileInfo.getProperty("version")
-            .replace("<binary ", "")
-            .replace(">", "");
-        final SearchTrace plistTrace = searchForTrace(searcher,
-            format("data.raw.fileType='Binary Plist' AND name='%s'", plistName));
+        // Get the plist trace by its name, searching for it on its own if it was not resolved up front
+        final String plistName = getPlistName(fileInfo);
+        final SearchTrace plistTrace = plistTraces.containsKey(plistName)
+            ? plistTraces.get(plistName)
+            : searchForTrace(searcher, PlistResolver.query(plistName));
         final RandomAccessData plistData = plistTrace.getData("plain");
         final byte[] buffer = plistData.readNBytes((int) plistData.remaining());
 
@@ -242,10 +296,19 @@ public final class QuickLookPlugin implements DeferredExtractionPlugin {
         return result;
     }
 
-    static TableRow getFileInfo(final Map<Integer, TableRow> files, final TableRow thumbnailInfo, final Set<Integer> unusedFileIndexes) {
+    private static String getPlistName(final TableRow fileInfo) {
+        // The name of the plist trace is known by the fileInfo property "version"
+        return fileInfo.getProperty("version")
+            .replace("<binary ", "")
+            .replace(">", "");
+    }
+
+    static TableRow getFileInfo(final CsvTable files, final TableRow thumbnailInfo, final BitSet unusedFileIndexes) {
         final int fileId = getIntProperty(thumbnailInfo, "file_id");
-        unusedFileIndexes.remove(fileId);
+        if (fileId >= 0) {
+            unusedFileIndexes.clear(fileId);
+        }
 
-        return files.get(fileId);
+        return files.getRow(fileId);
     }
 }
@@ -3,10 +3,21 @@ package org.hansken.plugin.extraction;
 import org.hansken.plugin.extraction.runtime.grpc.server.ExtractionPluginServerMain;
 
 public final class QuickLookPluginMain {
+    // the system properties encoding thumbnails in parallel: the number of threads and the maximum bitmap bytes held
+    private static final String ENCODE_THREADS_PROPERTY = "encodeThreads";
+    private static final String ENCODE_BYTES_PROPERTY = "encodeBytes";
+    // the system properties resolving plist traces: the number of concurrent searches and the names per search
+    private static final String SEARCH_THREADS_PROPERTY = "searchThreads";
+    private static final String SEARCH_BATCH_SIZE_PROPERTY = "searchBatchSize";
+
     private QuickLookPluginMain() {
     }
 
     public static void main(final String... args) {
-        ExtractionPluginServerMain.runMain(QuickLookPlugin::new, args);
+        final int encodeThreads = Integer.getInteger(ENCODE_THREADS_PROPERTY, 1);
+        final long encodeBytes = Long.getLong(ENCODE_BYTES_PROPERTY, ThumbnailPipeline.DEFAULT_MAX_BYTES);
+        final int searchThreads = Integer.getInteger(SEARCH_THREADS_PROPERTY, PlistResolver.DEFAULT_THREADS);
+        final int searchBatchSize = Integer.getInteger(SEARCH_BATCH_SIZE_PROPERTY, PlistResolver.DEFAULT_BATCH_SIZE);
+        ExtractionPluginServerMain.runMain(() -> new QuickLookPlugin(encodeThreads, encodeBytes, searchThreads, searchBatchSize), args);
     }
 }
@@ -0,0 +1,177 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hansken.plugin.extraction.api.DataWriter;
+
+/**
+ * Encodes thumbnails on a pool of threads, while the calling thread reads the next thumbnails. The encoded
+ * thumbnails are handed back to the calling thread in the order in which they were submitted, so child traces are
+ * still added in order. Without a pool, a thumbnail is encoded on the calling thread and handed over right away.
+ * <p>
+ * The thumbnails in flight are bounded both in number and in bytes: when submitting a thumbnail would exceed either,
+ * the calling thread first waits for the oldest thumbnail to be encoded and hands it over. Room for the bytes of the
+ * next thumbnails can also be {@link #reserve(long) reserved} before they are read.
+ * <p>
+ * A pipeline is used for the thumbnails of a single trace, the {@link #newEncoderPool(int) pool} is shared by the
+ * pipelines of all traces.
+ */
+final class ThumbnailPipeline implements AutoCloseable {
+    /**
+     * The default maximum number of bytes held by the thumbnails in flight.
+     */
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final ExecutorService _executor;
+    private final int _maxPending;
+    private final long _maxBytes;
+    private final Deque<Pending> _pending = new ArrayDeque<>();
+    private long _pendingBytes;
+
+    /**
+     * @param executor the pool encoding the thumbnails, or {@code null} to encode them on the calling thread
+     * @param threads the number of threads of the pool
+     * @param maxBytes the maximum number of bytes held by the thumbnails in flight
+     */
+    ThumbnailPipeline(final ExecutorService executor, final int threads, final long maxBytes) {
+        _executor = executor;
+        _maxPending = 2 * threads;
+        _maxBytes = maxBytes;
+    }
+
+    /**
+     * Creates a pool of daemon threads to encode thumbnails with, the plugin has no life cycle to shut it down at.
+     *
+     * @param threads the number of threads
+     * @return the pool
+     */
+    static ExecutorService newEncoderPool(final int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "thumbnail-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Hands over the oldest thumbnails until the given number of bytes can be submitted without exceeding the maximum,
+     * or until there are no thumbnails in flight anymore.
+     *
+     * @param bytes the number of bytes to make room for
+     * @throws IOException when encoding or handling an earlier thumbnail fails
+     */
+    void reserve(final long bytes) throws IOException {
+        while (!_pending.isEmpty() && _pendingBytes + bytes > _maxBytes) {
+            handleNext();
+        }
+    }
+
+    /**
+     * Submits a thumbnail to be encoded, first handing over the oldest thumbnails if there are too many in flight.
+     *
+     * @param bytes the (estimated) number of bytes held by the thumbnail until it is handed over
+     * @param encoder encodes the thumbnail, on one of the threads of the pool
+     * @param handler handles the encoded thumbnail, on the calling thread
+     * @throws IOException when encoding or handling an earlier thumbnail fails
+     */
+    void submit(final long bytes, final Callable<DataWriter> encoder, final ThumbnailHandler handler) throws IOException {
+        if (_executor == null) {
+            handler.handle(encode(encoder));
+            return;
+        }
+
+        while (!_pending.isEmpty() && (_pendingBytes + bytes > _maxBytes || _pending.size() >= _maxPending)) {
+            handleNext();
+        }
+        _pending.add(new Pending(bytes, _executor.submit(encoder), handler));
+        _pendingBytes += bytes;
+
+        // hand over the thumbnails encoded so far, so the children are added while reading
+        while (!_pending.isEmpty() && _pending.peek()._encoded.isDone()) {
+            handleNext();
+        }
+    }
+
+    /**
+     * Hands over all thumbnails in flight.
+     *
+     * @throws IOException when encoding or handling a thumbnail fails
+     */
+    void finish() throws IOException {
+        while (!_pending.isEmpty()) {
+            handleNext();
+        }
+    }
+
+    @Override
+    public void close() {
+        // thumbnails still pending after a failure are not needed anymore
+        for (final Pending pending : _pending) {
+            pending._encoded.cancel(true);
+        }
+        _pending.clear();
+    }
+
+    private static DataWriter encode(final Callable<DataWriter> encoder) throws IOException {
+        try {
+            return encoder.call();
+        }
+        catch (final Exception e) {
+            throw new IOException("Failed to encode thumbnail", e);
+        }
+    }
+
+    private void handleNext() throws IOException {
+        final Pending next = _pending.remove();
+        _pendingBytes -= next._bytes;
+        final DataWriter encoded;
+        try {
+            encoded = next._encoded.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding thumbnails");
+        }
+        catch (final ExecutionException e) {
+            throw new IOException("Failed to encode thumbnail", e.getCause());
+        }
+        next._handler.handle(encoded);
+    }
+
+    /**
+     * Handles an encoded thumbnail on the calling thread.
+     */
+    @FunctionalInterface
+    interface ThumbnailHandler {
+        /**
+         * Handles an encoded thumbnail.
+         *
+         * @param encoded writes the encoded thumbnail
+         * @throws IOException when handling the thumbnail fails
+         */
+        void handle(DataWriter encoded) throws IOException;
+    }
+
+    /**
+     * A thumbnail which is being encoded.
+     */
+    private static final class Pending {
+        private final long _bytes;
+        private final Future<DataWriter> _encoded;
+        private final ThumbnailHandler _handler;
+
+        Pending(final long bytes, final Future<DataWriter> encoded, final ThumbnailHandler handler) {
+            _bytes = bytes;
+            _encoded = encoded;
+            _handler = handler;
+        }
+    }
+}
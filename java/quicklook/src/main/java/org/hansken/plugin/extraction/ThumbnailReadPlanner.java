@@ -0,0 +1,164 @@
+package org.hansken.plugin.extraction;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * Plans the reads of the thumbnail bitmaps from the thumbnails data. The bitmaps are planned in the order of the
+ * table, a window at a time, and are read in the order of their offsets instead: ranges which overlap, are adjacent or
+ * are only a small gap apart are read at once, with a single seek, and the bitmaps are sliced out of the buffer of that
+ * read. So the data is read in a few large sequential reads, instead of a seek and a read per bitmap.
+ * <p>
+ * The bitmaps share the buffers of the reads, so the buffers of a window stay in memory until all bitmaps of the
+ * window are released. The {@link #readBytes() size} of these buffers is known before the window is read.
+ */
+final class ThumbnailReadPlanner {
+    /**
+     * The default number of bitmap bytes planned in a window before it is read.
+     */
+    static final int DEFAULT_WINDOW_BYTES = 8 * 1024 * 1024;
+    /**
+     * The default maximum number of bytes between two ranges which are still read at once.
+     */
+    static final int DEFAULT_MAX_GAP = 64 * 1024;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final RandomAccessData _data;
+    private final int _windowBytes;
+    private final int _maxGap;
+    private int[] _offsets = new int[INITIAL_CAPACITY];
+    private int[] _lengths = new int[INITIAL_CAPACITY];
+    private int _count;
+    private long _plannedBytes;
+    // the planned bitmaps sorted by their offsets, with the index of each bitmap in the low bits
+    private long[] _order;
+    // the end (exclusive) in the order and the length of each read, and the number of reads, when the window is merged
+    private int[] _readEnds;
+    private int[] _readLengths;
+    private int _reads;
+    private long _readBytes;
+
+    ThumbnailReadPlanner(final RandomAccessData data, final int windowBytes, final int maxGap) {
+        _data = data;
+        _windowBytes = windowBytes;
+        _maxGap = maxGap;
+    }
+
+    /**
+     * Plans the read of a bitmap in the current window.
+     *
+     * @param offset the offset of the bitmap in the data
+     * @param length the length of the bitmap
+     */
+    void plan(final int offset, final int length) {
+        if (_count == _offsets.length) {
+            _offsets = Arrays.copyOf(_offsets, 2 * _count);
+            _lengths = Arrays.copyOf(_lengths, 2 * _count);
+        }
+        _offsets[_count] = offset;
+        _lengths[_count] = length;
+        _count++;
+        _plannedBytes += length;
+        _order = null;
+    }
+
+    /**
+     * Whether enough bitmaps are planned to read the current window.
+     *
+     * @return whether the current window is full
+     */
+    boolean isFull() {
+        return _plannedBytes >= _windowBytes;
+    }
+
+    /**
+     * The number of bytes read for the current window, which stay in memory until all its bitmaps are released.
+     *
+     * @return the total size of the buffers of the reads of the current window
+     */
+    long readBytes() {
+        merge();
+        return _readBytes;
+    }
+
+    /**
+     * Reads the bitmaps planned in the current window, and starts a new window.
+     *
+     * @return the bitmaps, in the order in which they were planned
+     * @throws IOException when the data could not be read
+     */
+    ByteBuffer[] read() throws IOException {
+        merge();
+        final ByteBuffer[] bitmaps = new ByteBuffer[_count];
+        int from = 0;
+        for (int read = 0; read < _reads; read++) {
+            final int to = _readEnds[read];
+            final long start = _offsets[(int) _order[from]];
+            final byte[] buffer = readRange(start, _readLengths[read]);
+            for (int i = from; i < to; i++) {
+                final int bitmap = (int) _order[i];
+                bitmaps[bitmap] = ByteBuffer.wrap(buffer, (int) (_offsets[bitmap] - start), _lengths[bitmap]).slice();
+            }
+            from = to;
+        }
+
+        _count = 0;
+        _plannedBytes = 0;
+        _order = null;
+        return bitmaps;
+    }
+
+    // merges the ranges of the planned bitmaps into reads, once per window
+    private void merge() {
+        if (_order != null) {
+            return;
+        }
+        _order = new long[_count];
+        for (int i = 0; i < _count; i++) {
+            _order[i] = (long) _offsets[i] << Integer.SIZE | i;
+        }
+        Arrays.sort(_order);
+
+        _readEnds = new int[_count];
+        _readLengths = new int[_count];
+        _reads = 0;
+        _readBytes = 0;
+        int from = 0;
+        while (from < _count) {
+            final long start = _offsets[(int) _order[from]];
+            long end = start + _lengths[(int) _order[from]];
+            int to = from + 1;
+            for (; to < _count; to++) {
+                final int next = (int) _order[to];
+                final long nextEnd = Math.max(end, (long) _offsets[next] + _lengths[next]);
+                // a read never spans more than a window, unless it holds a single larger bitmap
+                if (_offsets[next] - end > _maxGap || nextEnd - start > _windowBytes) {
+                    break;
+                }
+                end = nextEnd;
+            }
+            _readEnds[_reads] = to;
+            _readLengths[_reads] = (int) (end - start);
+            _reads++;
+            _readBytes += end - start;
+            from = to;
+        }
+    }
+
+    private byte[] readRange(final long start, final int length) throws IOException {
+        final byte[] buffer = new byte[length];
+        // the previous read may have ended right where this one starts
+        if (_data.position() != start) {
+            _data.seek(start);
+        }
+        if (_data.read(buffer, length) != length) {
+            throw new EOFException("Could not read " + length + " bytes of bitmaps at offset " + start);
+        }
+        return buffer;
+    }
+}
@@ -3,42 +3,60 @@ package org.hansken.plugin.extraction;
 import static org.hansken.plugin.extraction.util.ArgChecks.argNotNull;
 
 import java.awt.Point;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
-import java.io.ByteArrayInputStream;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Map;
 import java.util.TimeZone;
+import java.util.function.BiConsumer;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 /**
  * Utils class for the {@link QuickLookPlugin} containing the more generic methods.
  */
 public final class Utils {
     private static final long MAC_ABSOLUTE_TIME_EPOCH = 978307200000L; // Unix Milliseconds (UTC) 2001-01-01 00:00:00
+    private static final int RGBA_BANDS = 4;
+    private static final ColorModel RGBA_COLOR_MODEL = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+        true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
 
     private Utils() { }
 
     /**
-     * Creates a {@link BufferedImage} from provided {@code bytes} with width and height.
+     * Creates a {@link BufferedImage} over the bytes of an RGBA bitmap, from the position of the buffer, with width
+     * and height. The image uses the bytes of the buffer as they are, so they are neither copied nor reordered.
      *
-     * @param bytes bytes of the image
+     * @param bytesRGBA bytes of the image formatted as RGBA, backed by an array
      * @param width image width
      * @param height image height
-     * @return {@code BufferedImage} created from bytes with width and height
+     * @return {@code BufferedImage} over the bytes with width and height
      */
-    static BufferedImage createBufferedImage(final byte[] bytes, final int width, final int height) {
-        final BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
-        bufferedImage.setData(Raster.createRaster(bufferedImage.getSampleModel(),
-            new DataBufferByte(bytes, bytes.length), new Point()));
+    static BufferedImage createBufferedImage(final ByteBuffer bytesRGBA, final int width, final int height) {
+        // the start of the bitmap is part of the band offsets, not every user of a raster honours the data buffer offset
+        final int start = bytesRGBA.arrayOffset() + bytesRGBA.position();
+        final int[] bandOffsets = new int[RGBA_BANDS];
+        for (int band = 0; band < RGBA_BANDS; band++) {
+            bandOffsets[band] = start + band;
+        }
+        final DataBufferByte dataBuffer = new DataBufferByte(bytesRGBA.array(), start + bytesRGBA.remaining());
+        final WritableRaster raster = Raster.createInterleavedRaster(dataBuffer, width, height, RGBA_BANDS * width,
+            RGBA_BANDS, bandOffsets, new Point());
 
-        return bufferedImage;
+        return new BufferedImage(RGBA_COLOR_MODEL, raster, false, null);
     }
 
     /**
@@ -69,35 +87,26 @@ public final class Utils {
     }
 
     /**
-     * Takes a {@link BufferedImage} and writes it as a png. This png is returned as an {@link InputStream}.
+     * Takes a {@link BufferedImage} and writes it as a png. The png is kept in the returned stream, which can write it
+     * to another stream without copying it. Unlike {@link ImageIO#write}, the png is not cached in a temporary file
+     * while it is written.
      *
      * @param bufferedImage picture to be written as png
-     * @return an input stream of the picture
+     * @return an output stream holding the picture
      * @throws IOException when the writing of the png image fails
      */
-    static InputStream getPngImageAsInputStream(final BufferedImage bufferedImage) throws IOException {
+    static ByteArrayOutputStream getPngImage(final BufferedImage bufferedImage) throws IOException {
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        ImageIO.write(bufferedImage, "png", outputStream);
-
-        return new ByteArrayInputStream(outputStream.toByteArray());
-    }
-
-    /**
-     * Reverses the bytes of an RGBA bitmap.
-     *
-     * @param srcRGBA source bitmap formatted as RGBA
-     * @return bitmap formatted as ABGR
-     */
-    static byte[] convertRGBAToABGR(final byte[] srcRGBA) {
-        final byte[] dstABGR = new byte[srcRGBA.length];
-        for (int i = 0; i < srcRGBA.length; i += 4) {
-            dstABGR[i] = srcRGBA[i + 3];
-            dstABGR[i + 1] = srcRGBA[i + 2];
-            dstABGR[i + 2] = srcRGBA[i + 1];
-            dstABGR[i + 3] = srcRGBA[i];
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream imageStream = new MemoryCacheImageOutputStream(outputStream)) {
+            writer.setOutput(imageStream);
+            writer.write(bufferedImage);
+        }
+        finally {
+            writer.dispose();
         }
 
-        return dstABGR;
+        return outputStream;
     }
 
     /**
@@ -112,21 +121,26 @@ public final class Utils {
     }
 
     /**
-     * A class defining the csv table row.
+     * A class defining the csv table row, a view on a row of a {@link CsvTable}.
      */
     static class TableRow {
-        private final Map<String, String> _properties;
+        private final CsvTable _table;
+        private final int _row;
 
-        TableRow(final Map<String, String> properties) {
-            _properties = properties;
+        TableRow(final CsvTable table, final int row) {
+            _table = table;
+            _row = row;
         }
 
-        Map<String, String> getProperties() {
-            return _properties;
+        void forEachProperty(final BiConsumer<String, String> action) {
+            for (int column = 0; column < _table.getColumnCount(); column++) {
+                action.accept(_table.getColumnName(column), _table.getValue(_row, column));
+            }
         }
 
         String getProperty(final String key) {
-            return _properties.get(key);
+            final int column = _table.getColumnIndex(key);
+            return column < 0 ? null : _table.getValue(_row, column);
         }
     }
 }
@@ -0,0 +1,120 @@
+package org.hansken.plugin.extraction;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.hansken.plugin.extraction.api.SearchResult;
+import org.hansken.plugin.extraction.api.SearchTrace;
+import org.hansken.plugin.extraction.api.TraceSearcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares resolving the plist traces of the files in a thumbnail cache the way the {@link QuickLookPlugin} does, with
+ * the {@link PlistResolver} searching for 64 names at once, on one thread and on concurrent searches, to the way it
+ * did before: a search per file.
+ * <p>
+ * An operation resolves the plist traces of 2000 files. The searches are answered by a stand-in {@link TraceSearcher}
+ * which waits for the latency of a search before it answers, as a search of a remote Hansken does, so the latency
+ * rather than the plugin determines the time, for example
+ * {@code mvn -Pbenchmark test -Dbenchmark=PlistResolver -Dbenchmark.args="-p latency=1"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlistResolverBenchmark {
+
+    private static final int FILES = 2000;
+    private static final Pattern NAME = Pattern.compile("name='([^']*)'");
+
+    // the latency of a search in milliseconds, a JMH parameter (-p latency=...), so without the usual field prefix
+    @SuppressWarnings("checkstyle:membername")
+    @Param({"5"})
+    private int latency;
+
+    private List<String> _names;
+    private TraceSearcher _searcher;
+    private PlistResolver _batched;
+    private PlistResolver _concurrent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _names = IntStream.range(0, FILES)
+            .mapToObj(file -> file + "_version")
+            .collect(Collectors.toList());
+        _searcher = standIn(TraceSearcher.class, "search", args -> search((String) args[0]));
+        _batched = new PlistResolver(PlistResolver.DEFAULT_BATCH_SIZE, 1);
+        _concurrent = new PlistResolver(PlistResolver.DEFAULT_BATCH_SIZE, PlistResolver.DEFAULT_THREADS);
+    }
+
+    @Benchmark
+    public Map<String, SearchTrace> perFile() throws Exception {
+        // the resolving as it was before: a search per file, for the query of its plist trace
+        final Map<String, SearchTrace> traces = new HashMap<>();
+        for (final String name : _names) {
+            traces.put(name, _searcher.search(PlistResolver.query(name), 1).getTraces().findFirst().orElseThrow());
+        }
+        return traces;
+    }
+
+    @Benchmark
+    public Map<String, SearchTrace> batched() throws Exception {
+        return _batched.resolve(_searcher, _names);
+    }
+
+    @Benchmark
+    public Map<String, SearchTrace> concurrent() throws Exception {
+        return _concurrent.resolve(_searcher, _names);
+    }
+
+    // answers a search after the latency, with a trace for every name in the query
+    private SearchResult search(final String query) throws InterruptedException {
+        Thread.sleep(latency);
+        final List<SearchTrace> traces = new ArrayList<>();
+        final Matcher name = NAME.matcher(query);
+        while (name.find()) {
+            final String found = name.group(1);
+            traces.add(standIn(SearchTrace.class, "get", args -> found));
+        }
+        return standIn(SearchResult.class, "getTraces", args -> traces.stream());
+    }
+
+    // a stand-in of an interface of the SDK, which only answers the single method of it that the resolver calls
+    private static <T> T standIn(final Class<T> type, final String methodName, final Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (!method.getName().equals(methodName)) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return answer.answer(args);
+        }));
+    }
+
+    /**
+     * The answer of a stand-in to a call of its method.
+     */
+    @FunctionalInterface
+    private interface Answer {
+        Object answer(Object[] args) throws InterruptedException;
+    }
+}
@@ -0,0 +1,42 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.DeferredExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedDeferredExtractionPluginFlits;
+
+/**
+ * Encodes the thumbnails on 4 threads, holding at most 256 KiB of bitmaps so they are read in windows of 128 KiB which
+ * wait for the previous windows, and resolves the 12 plist traces in 3 concurrent searches of 4 names. The results are
+ * the same as when the thumbnails are encoded on the reading thread and the plist traces are resolved in a single
+ * search.
+ */
+class QuickLookPluginParallelIT extends EmbeddedDeferredExtractionPluginFlits {
+
+    private static final int ENCODE_THREADS = 4;
+    private static final long ENCODE_BYTES = 256 * 1024;
+    private static final int SEARCH_THREADS = 4;
+    private static final int SEARCH_BATCH_SIZE = 4;
+
+    @Override
+    protected DeferredExtractionPlugin pluginToTest() {
+        return new QuickLookPlugin(ENCODE_THREADS, ENCODE_BYTES, SEARCH_THREADS, SEARCH_BATCH_SIZE);
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("integration/inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("integration/results");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
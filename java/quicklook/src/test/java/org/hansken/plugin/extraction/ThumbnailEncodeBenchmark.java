@@ -0,0 +1,118 @@
+package org.hansken.plugin.extraction;
+
+import static org.hansken.plugin.extraction.Utils.createBufferedImage;
+import static org.hansken.plugin.extraction.Utils.getIntProperty;
+import static org.hansken.plugin.extraction.Utils.getPngImage;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.hansken.plugin.extraction.Utils.TableRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares encoding thumbnails the way the {@link QuickLookPlugin} does, with the image over the bitmap in the read
+ * buffer and the png written straight from the stream it was encoded to, to the way it did before: the bitmap copied
+ * to ABGR, copied into the image and the png copied to an input stream.
+ * <p>
+ * An operation encodes the 25 thumbnails of the test input {@code integration/inputs/thumbnails.raw}, sliced out of
+ * the data as the bitmaps of a read, and writes the pngs as the child data would. Run with {@code -prof gc} to see
+ * the allocation per operation in {@code gc.alloc.rate.norm}, for example
+ * {@code mvn -Pbenchmark test -Dbenchmark=ThumbnailEncode -Dbenchmark.args="-prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThumbnailEncodeBenchmark {
+
+    private static final String INPUTS = "/integration/inputs/";
+    private static final int RGBA_BANDS = 4;
+
+    private ByteBuffer[] _bitmaps;
+    private int[] _widths;
+    private int[] _heights;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final byte[] data = resource("thumbnails.raw");
+        final CsvTable thumbnails = CsvTable.parse(new ByteArrayData(resource("thumbnails/searchtraces/thumbnails.raw")));
+
+        final int count = thumbnails.getRowCount();
+        _bitmaps = new ByteBuffer[count];
+        _widths = new int[count];
+        _heights = new int[count];
+        for (int i = 0; i < count; i++) {
+            final TableRow thumbnail = thumbnails.getRow(i + 1);
+            final int offset = getIntProperty(thumbnail, "bitmapdata_location");
+            _bitmaps[i] = ByteBuffer.wrap(data, offset, getIntProperty(thumbnail, "bitmapdata_length")).slice();
+            // the width of a thumbnail is the number of pixels per row, as the plugin takes it
+            _widths[i] = getIntProperty(thumbnail, "bytesperrow") / (getIntProperty(thumbnail, "bitsperpixel") / 8);
+            _heights[i] = getIntProperty(thumbnail, "height");
+        }
+    }
+
+    @Benchmark
+    public void imageOverBitmap() throws IOException {
+        for (int i = 0; i < _bitmaps.length; i++) {
+            getPngImage(createBufferedImage(_bitmaps[i], _widths[i], _heights[i])).writeTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public void copies() throws IOException {
+        for (int i = 0; i < _bitmaps.length; i++) {
+            copy(_bitmaps[i], _widths[i], _heights[i]);
+        }
+    }
+
+    // the encoding as it was before: the bitmap reversed into a new array, which is copied into the image, and the png
+    // written by ImageIO and copied into an input stream for the child data
+    private static void copy(final ByteBuffer bitmap, final int width, final int height) throws IOException {
+        final byte[] bytes = new byte[bitmap.remaining()];
+        for (int i = 0; i < bytes.length; i += RGBA_BANDS) {
+            bytes[i] = bitmap.get(i + 3);
+            bytes[i + 1] = bitmap.get(i + 2);
+            bytes[i + 2] = bitmap.get(i + 1);
+            bytes[i + 3] = bitmap.get(i);
+        }
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+        image.setData(Raster.createRaster(image.getSampleModel(), new DataBufferByte(bytes, bytes.length), new Point()));
+
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        new ByteArrayInputStream(png.toByteArray()).transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static byte[] resource(final String name) throws IOException {
+        try (InputStream input = ThumbnailEncodeBenchmark.class.getResourceAsStream(INPUTS + name)) {
+            if (input == null) {
+                throw new IOException("Test input not found: " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.hansken.plugin.extraction;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * Reads the lines of data as streams of bytes, straight from a buffer over the data, so a line is never held in
+ * memory as a whole. Like {@link java.util.Scanner#nextLine()}, a line ends with {@code \n}, {@code \r\n} or
+ * {@code \r}, the line separator is not part of the line, and a last line without a line separator is a line as
+ * well, unless it is empty.
+ * <p>
+ * Line separators are searched for eight bytes at a time, and nothing is decoded, so reading a line costs little
+ * more than copying its bytes.
+ */
+final class LineReader {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024; // 64 KiB
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LFS = ONES * LF;
+    private static final long CRS = ONES * CR;
+
+    private final RandomAccessData _data;
+    private final byte[] _buffer;
+    private int _position;
+    private int _limit;
+
+    // the stream of the current line, if it was not read up to its end yet
+    private LineStream _line;
+    // whether the previous line ended with \r, so a \n directly following it is part of its line separator
+    private boolean _skipLineFeed;
+
+    LineReader(final RandomAccessData data) {
+        this(data, DEFAULT_BUFFER_SIZE);
+    }
+
+    LineReader(final RandomAccessData data, final int bufferSize) {
+        _data = data;
+        _buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Skips the rest of the current line, if any.
+     *
+     * @return whether there is another line
+     * @throws IOException when the data could not be read
+     */
+    boolean hasNextLine() throws IOException {
+        if (_line != null) {
+            _line.skipRest();
+        }
+        if (!fill()) {
+            return false;
+        }
+        if (_skipLineFeed) {
+            _skipLineFeed = false;
+            if (_buffer[_position] == LF) {
+                _position++;
+                return fill();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts reading the next line, see {@link #hasNextLine()}. The returned stream is valid until the next call to
+     * this reader.
+     *
+     * @return the bytes of the line, without its line separator
+     * @throws IOException when the data could not be read
+     */
+    InputStream nextLine() throws IOException {
+        if (!hasNextLine()) {
+            throw new EOFException("no more lines");
+        }
+        _line = new LineStream();
+        return _line;
+    }
+
+    /**
+     * Makes sure the buffer holds unread bytes, if there are any left.
+     *
+     * @return whether there are unread bytes
+     */
+    private boolean fill() throws IOException {
+        if (_position < _limit) {
+            return true;
+        }
+        final int length = (int) Math.min(_buffer.length, _data.remaining());
+        if (length == 0) {
+            return false;
+        }
+        if (_data.read(_buffer, length) != length) {
+            throw new EOFException("could not read " + length + " bytes");
+        }
+        _position = 0;
+        _limit = length;
+        return true;
+    }
+
+    /**
+     * Finds the first line separator in a range of an array, comparing eight bytes at a time.
+     *
+     * @return the index of the first {@code \n} or {@code \r}, or {@code to} if there is none in the range
+     */
+    static int indexOfLineSeparator(final byte[] bytes, final int from, final int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            // the bytes equal to a separator become zero, the lowest zero byte sets the lowest high bit in found
+            final long word = (long) LONGS.get(bytes, i);
+            final long lf = word ^ LFS;
+            final long cr = word ^ CRS;
+            final long found = ((lf - ONES) & ~lf | (cr - ONES) & ~cr) & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == LF || bytes[i] == CR) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * The bytes of the current line, read directly from the buffer of the reader.
+     */
+    private final class LineStream extends InputStream {
+        private boolean _ended;
+
+        @Override
+        public int read() throws IOException {
+            if (_ended || !fill()) {
+                end();
+                return -1;
+            }
+            final byte b = _buffer[_position++];
+            if (b == LF || b == CR) {
+                endWith(b);
+                return -1;
+            }
+            return b & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (_ended || !fill()) {
+                end();
+                return -1;
+            }
+            final int end = Math.min(_limit, _position + length);
+            final int i = indexOfLineSeparator(_buffer, _position, end);
+            final int count = i - _position;
+            System.arraycopy(_buffer, _position, bytes, offset, count);
+            _position = i;
+            if (i < end) {
+                // the line separator was found
+                _position++;
+                endWith(_buffer[i]);
+                return count == 0 ? -1 : count;
+            }
+            return count;
+        }
+
+        void skipRest() throws IOException {
+            while (!_ended && fill()) {
+                final int i = indexOfLineSeparator(_buffer, _position, _limit);
+                _position = i;
+                if (i < _limit) {
+                    _position++;
+                    endWith(_buffer[i]);
+                }
+            }
+            end();
+        }
+
+        private void endWith(final byte separator) {
+            _skipLineFeed = separator == CR;
+            end();
+        }
+
+        private void end() {
+            _ended = true;
+            if (_line == this) {
+                _line = null;
+            }
+        }
+    }
+}
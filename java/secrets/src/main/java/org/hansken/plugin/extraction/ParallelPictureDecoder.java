@@ -0,0 +1,150 @@
+package org.hansken.plugin.extraction;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Base64.Decoder;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes base 64 encoded pictures, one per line, on multiple threads. The calling thread reads the lines, the
+ * pictures are decoded on a thread pool, and the decoded pictures are handed to the {@link PictureHandler} on the
+ * calling thread again, in the order of the lines.
+ * <p>
+ * The number of bytes held by the pictures in flight, both encoded and decoded, is bounded: when it would exceed the
+ * maximum, the calling thread first hands over the oldest pictures. A picture which is too large to hold at all is
+ * decoded while it is read instead, after the pictures before it are handed over.
+ * <p>
+ * The thread pool is created once and shared by all data decoded with this decoder, also when they are decoded at the
+ * same time, so the number of decoding threads stays bounded.
+ */
+final class ParallelPictureDecoder {
+
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024; // 64 MiB
+
+    private static final Decoder BASE_64 = Base64.getDecoder();
+
+    /**
+     * Handles the decoded pictures, in the order of the lines.
+     */
+    @FunctionalInterface
+    interface PictureHandler {
+        /**
+         * @param index the index of the picture, counting from 0
+         * @param picture the decoded bytes of the picture
+         */
+        void picture(int index, InputStream picture) throws IOException;
+    }
+
+    private final int _threads;
+    private final long _maxBytes;
+    // the maximum size of an encoded picture which is held in memory, it is held together with its decoded bytes
+    private final int _maxLineBytes;
+    private final ExecutorService _executor;
+
+    ParallelPictureDecoder(final int threads, final long maxBytes) {
+        _threads = threads;
+        _maxBytes = maxBytes;
+        _maxLineBytes = (int) Math.min(maxBytes / 2, Integer.MAX_VALUE - 8);
+        // daemon threads, the plugin has no life cycle to shut the pool down at
+        _executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "picture-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Decodes the pictures on the remaining lines.
+     *
+     * @param lines the lines with the pictures
+     * @param handler the handler of the decoded pictures
+     * @throws IOException when the lines could not be read, a picture could not be decoded, or by the handler
+     */
+    void decode(final LineReader lines, final PictureHandler handler) throws IOException {
+        final Deque<Pending> pending = new ArrayDeque<>();
+        try {
+            final int maxPending = 4 * _threads;
+            long pendingBytes = 0;
+            int index = 0;
+            while (lines.hasNextLine()) {
+                final InputStream line = lines.nextLine();
+                final byte[] encoded = line.readNBytes(_maxLineBytes + 1);
+                if (encoded.length > _maxLineBytes) {
+                    // too large to hold: decode it while it is read, after the pictures before it
+                    while (!pending.isEmpty()) {
+                        pendingBytes -= handle(pending.remove(), handler);
+                    }
+                    handler.picture(index++, BASE_64.wrap(new SequenceInputStream(new ByteArrayInputStream(encoded), line)));
+                    continue;
+                }
+
+                final long bytes = 2L * encoded.length;
+                while (!pending.isEmpty() && (pendingBytes + bytes > _maxBytes || pending.size() >= maxPending)) {
+                    pendingBytes -= handle(pending.remove(), handler);
+                }
+                pending.add(new Pending(index++, bytes, _executor.submit(() -> BASE_64.decode(encoded))));
+                pendingBytes += bytes;
+
+                // hand over the pictures decoded so far, so the children are added while reading
+                while (!pending.isEmpty() && pending.peek()._decoded.isDone()) {
+                    pendingBytes -= handle(pending.remove(), handler);
+                }
+            }
+            while (!pending.isEmpty()) {
+                handle(pending.remove(), handler);
+            }
+        }
+        finally {
+            // pictures still pending after a failure are not needed anymore
+            for (final Pending picture : pending) {
+                picture._decoded.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Waits for a picture to be decoded and hands it over.
+     *
+     * @return the number of bytes which were held by the picture
+     */
+    private static long handle(final Pending picture, final PictureHandler handler) throws IOException {
+        final byte[] decoded;
+        try {
+            decoded = picture._decoded.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while decoding pictures");
+        }
+        catch (final ExecutionException e) {
+            throw new IOException("failed to decode picture " + picture._index, e.getCause());
+        }
+        handler.picture(picture._index, new ByteArrayInputStream(decoded));
+        return picture._bytes;
+    }
+
+    /**
+     * A picture which is being decoded.
+     */
+    private static final class Pending {
+        private final int _index;
+        // the encoded and decoded bytes held by the picture, at most
+        private final long _bytes;
+        private final Future<byte[]> _decoded;
+
+        Pending(final int index, final long bytes, final Future<byte[]> decoded) {
+            _index = index;
+            _bytes = bytes;
+            _decoded = decoded;
+        }
+    }
+}
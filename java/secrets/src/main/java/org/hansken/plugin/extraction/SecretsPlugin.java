@@ -1,28 +1,31 @@
 package org.hansken.plugin.extraction;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import static org.hansken.plugin.extraction.api.MaturityLevel.PROOF_OF_CONCEPT;
-import static org.hansken.plugin.extraction.core.data.RandomAccessDatas.asInputStream;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Base64.Decoder;
-import java.util.Scanner;
 
 import org.hansken.plugin.extraction.api.Author;
 import org.hansken.plugin.extraction.api.DataContext;
 import org.hansken.plugin.extraction.api.ExtractionPlugin;
 import org.hansken.plugin.extraction.api.PluginId;
 import org.hansken.plugin.extraction.api.PluginInfo;
+import org.hansken.plugin.extraction.api.PluginResources;
 import org.hansken.plugin.extraction.api.Trace;
 
 /**
  * {@link ExtractionPlugin} which parses a made up example text format. The format
  * is as follows: the lines up to the first empty line represent a single text stream.
  * The lines after the empty line each contain a base 64 encoded picture.
+ * <p>
+ * The pictures are decoded while they are read from the data, and written directly to
+ * the data of their child traces, so a picture is never held in memory as a whole.
+ * Alternatively, the pictures are decoded in parallel by a {@link ParallelPictureDecoder},
+ * holding a bounded number of pictures in memory.
  */
 public final class SecretsPlugin implements ExtractionPlugin {
 
@@ -33,6 +36,29 @@ public final class SecretsPlugin implements ExtractionPlugin {
     private static final String TOOL_NAME = "SecretsPluginJava";
     private static final String TOOL_LICENSE = "Apache License, Version 2.0";
 
+    private final int _decodeThreads;
+    // decodes pictures on multiple threads, or null if pictures are decoded on the calling thread
+    private final ParallelPictureDecoder _parallelDecoder;
+
+    public SecretsPlugin() {
+        this(1, ParallelPictureDecoder.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates the plugin, decoding the pictures on multiple threads if more than one thread is given.
+     *
+     * @param decodeThreads the number of threads decoding pictures
+     * @param decodeBytes the maximum number of (encoded and decoded) picture bytes held while decoding in parallel
+     */
+    public SecretsPlugin(final int decodeThreads, final long decodeBytes) {
+        if (decodeThreads < 1 || decodeBytes < 1) {
+            throw new IllegalArgumentException("decodeThreads and decodeBytes must be at least 1: "
+                + decodeThreads + ", " + decodeBytes);
+        }
+        _decodeThreads = decodeThreads;
+        _parallelDecoder = decodeThreads > 1 ? new ParallelPictureDecoder(decodeThreads, decodeBytes) : null;
+    }
+
     @Override
     public PluginInfo pluginInfo() {
         final Author author = Author.builder()
@@ -41,7 +67,7 @@ public final class SecretsPlugin implements ExtractionPlugin {
             .organisation("NFI")
             .build();
 
-        return PluginInfo.builderFor(this)
+        final PluginInfo.Builder builder = PluginInfo.builderFor(this)
             .pluginVersion("0.0.1")
             .description("Extractor for .peb secret files")
             .author(author)
@@ -49,44 +75,151 @@ public final class SecretsPlugin implements ExtractionPlugin {
             .webpageUrl("https://hansken.org")
             .hqlMatcher("$data.size>0 AND file.extension=peb")
             .id(new PluginId(TOOL_DOMAIN, TOOL_CATEGORY, TOOL_NAME))
-            .license(TOOL_LICENSE)
-            .build();
+            .license(TOOL_LICENSE);
+
+        // the pictures are decoded on multiple cores when decoding in parallel
+        if (_decodeThreads > 1) {
+            builder.resources(PluginResources.builder()
+                .maximumCpu(_decodeThreads)
+                .build());
+        }
+        return builder.build();
     }
 
     @Override
     public void process(final Trace trace, final DataContext dataContext) throws IOException {
-        try (Scanner scanner = new Scanner(asInputStream(dataContext.data()))) {
-            // all lines up to the first empty line represent a single text stream,
-            // this is to demonstrate adding a text stream by writing chunks of data
-            trace.setData("text", stream -> {
-                while (scanner.hasNextLine()) {
-                    final String line = scanner.nextLine();
-                    // stop if we detect the empty line
-                    if (line.isBlank()) {
-                        return;
-                    }
-                    stream.write(utf8Bytes(line));
+        final LineReader lines = new LineReader(dataContext.data());
+        // all lines up to the first empty line represent a single text stream,
+        // this is to demonstrate adding a text stream by writing chunks of data
+        trace.setData("text", stream -> {
+            final TextLineWriter writer = new TextLineWriter(stream);
+            while (lines.hasNextLine()) {
+                // stop if we detect the empty line
+                if (!writer.write(lines.nextLine())) {
+                    return;
                 }
-            });
+            }
+        });
 
+        // now we add each base 64 encoded image as a new child trace
+        if (_parallelDecoder != null) {
+            _parallelDecoder.decode(lines, (index, picture) -> addPicture(trace, index, picture));
+        }
+        else {
             int pictureNumber = 0;
-            while (scanner.hasNextLine()) {
-                // now we add each base 64 encoded image as a new child trace,
-                // writing the full data at once as a single stream
-                trace.newChild("picture-" + pictureNumber++, child -> {
-                    child
-                        .addType("picture").set("picture.type", "thumbnail")
-                        .setData("raw", base64Decode(scanner.nextLine()));
-                });
+            while (lines.hasNextLine()) {
+                // decoding the line while it is written to the data of the child
+                addPicture(trace, pictureNumber++, BASE_64.wrap(lines.nextLine()));
             }
         }
     }
 
-    private static InputStream base64Decode(final String string) {
-        return new ByteArrayInputStream(BASE_64.decode(utf8Bytes(string)));
+    private static void addPicture(final Trace trace, final int pictureNumber, final InputStream picture) throws IOException {
+        trace.newChild("picture-" + pictureNumber, child -> {
+            child
+                .addType("picture").set("picture.type", "thumbnail")
+                .setData("raw", picture::transferTo);
+        });
     }
 
-    private static byte[] utf8Bytes(final String string) {
-        return string.getBytes(UTF_8);
+    /**
+     * Writes the bytes of the lines of the text stream, as they are read. Whether a line is blank, which ends the
+     * text stream, is decided on the bytes of the line as well, like {@link String#isBlank()} would on the line
+     * decoded as UTF-8. Only the whitespace at the start of a line is held until it is known whether the line is
+     * blank.
+     */
+    static final class TextLineWriter {
+        private final OutputStream _stream;
+        private final byte[] _chunk = new byte[8 * 1024];
+        // the bytes at the start of the current line, while they are all whitespace
+        private byte[] _pending = new byte[256];
+        private int _pendingLength;
+        // the number of pending bytes known to be whitespace; the rest is the start of an incomplete character
+        private int _whitespace;
+
+        TextLineWriter(final OutputStream stream) {
+            _stream = stream;
+        }
+
+        /**
+         * @param line the bytes of the line
+         * @return whether the line was written, {@code false} if the line is blank
+         * @throws IOException when the line could not be read or written
+         */
+        boolean write(final InputStream line) throws IOException {
+            _pendingLength = 0;
+            _whitespace = 0;
+            boolean blank = true;
+            int count;
+            while ((count = line.read(_chunk)) > 0) {
+                if (!blank) {
+                    _stream.write(_chunk, 0, count);
+                }
+                else if (_pendingLength == 0 && skipWhitespace(_chunk, 0, count) < 0) {
+                    // the common case: the line is known not to be blank from its first chunk
+                    blank = false;
+                    _stream.write(_chunk, 0, count);
+                }
+                else {
+                    appendPending(count);
+                    _whitespace = skipWhitespace(_pending, _whitespace, _pendingLength);
+                    if (_whitespace < 0) {
+                        blank = false;
+                        _stream.write(_pending, 0, _pendingLength);
+                    }
+                }
+            }
+            if (blank && _whitespace < _pendingLength) {
+                // an incomplete character at the end of the line is not whitespace
+                blank = false;
+                _stream.write(_pending, 0, _pendingLength);
+            }
+            return !blank;
+        }
+
+        private void appendPending(final int count) {
+            if (_pendingLength + count > _pending.length) {
+                _pending = Arrays.copyOf(_pending, Math.max(2 * _pending.length, _pendingLength + count));
+            }
+            System.arraycopy(_chunk, 0, _pending, _pendingLength, count);
+            _pendingLength += count;
+        }
+
+        /**
+         * Skips the UTF-8 encoded whitespace at the start of a range. Besides ASCII whitespace, the only whitespace
+         * characters (see {@link Character#isWhitespace(int)}) are three byte characters starting with 0xe1, 0xe2
+         * or 0xe3.
+         *
+         * @return the index after the whitespace, which is before the end of the range if the range ends in the
+         *         middle of a character, or -1 if there is a character other than whitespace in the range
+         */
+        private static int skipWhitespace(final byte[] bytes, final int from, final int to) {
+            int i = from;
+            while (i < to) {
+                final int b = bytes[i] & 0xff;
+                if (b < 0x80) {
+                    if (!Character.isWhitespace(b)) {
+                        return -1;
+                    }
+                    i++;
+                }
+                else if (b >= 0xe1 && b <= 0xe3) {
+                    if (to - i < 3) {
+                        return i;
+                    }
+                    final int b1 = bytes[i + 1] & 0xff;
+                    final int b2 = bytes[i + 2] & 0xff;
+                    final int codePoint = (b & 0x0f) << 12 | (b1 & 0x3f) << 6 | (b2 & 0x3f);
+                    if ((b1 & 0xc0) != 0x80 || (b2 & 0xc0) != 0x80 || !Character.isWhitespace(codePoint)) {
+                        return -1;
+                    }
+                    i += 3;
+                }
+                else {
+                    return -1;
+                }
+            }
+            return i;
+        }
     }
 }
@@ -3,7 +3,14 @@ package org.hansken.plugin.extraction;
 import org.hansken.plugin.extraction.runtime.grpc.server.ExtractionPluginServerMain;
 
 public class SecretsPluginMain {
+
+    // the system properties decoding pictures in parallel: the number of threads and the maximum bytes held
+    private static final String DECODE_THREADS_PROPERTY = "decodeThreads";
+    private static final String DECODE_BYTES_PROPERTY = "decodeBytes";
+
     public static void main(String... args) throws Exception {
-        ExtractionPluginServerMain.runMain(SecretsPlugin::new, args);
+        final int decodeThreads = Integer.getInteger(DECODE_THREADS_PROPERTY, 1);
+        final long decodeBytes = Long.getLong(DECODE_BYTES_PROPERTY, ParallelPictureDecoder.DEFAULT_MAX_BYTES);
+        ExtractionPluginServerMain.runMain(() -> new SecretsPlugin(decodeThreads, decodeBytes), args);
     }
 }
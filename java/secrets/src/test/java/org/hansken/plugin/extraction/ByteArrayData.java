@@ -0,0 +1,81 @@
+package org.hansken.plugin.extraction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import org.hansken.plugin.extraction.api.RandomAccessData;
+
+/**
+ * {@link RandomAccessData} over a byte array, to test and benchmark a plugin without a FLITS run. Reading can be made
+ * to fail at some position, as if the plugin was stopped there.
+ * <p>
+ * Every example module is self-contained, so the modules which need this class each have an identical copy.
+ */
+final class ByteArrayData implements RandomAccessData {
+
+    private final byte[] _bytes;
+    // reading beyond this position fails
+    private final int _failAt;
+    private int _position;
+
+    ByteArrayData(final byte[] bytes) {
+        this(bytes, bytes.length);
+    }
+
+    ByteArrayData(final byte[] bytes, final int failAt) {
+        _bytes = bytes;
+        _failAt = failAt;
+    }
+
+    @Override
+    public long size() {
+        return _bytes.length;
+    }
+
+    @Override
+    public long position() {
+        return _position;
+    }
+
+    @Override
+    public long remaining() {
+        return _bytes.length - _position;
+    }
+
+    @Override
+    public void seek(final long position) {
+        if (position < 0 || position > _bytes.length) {
+            throw new IllegalArgumentException("position out of bounds: " + position);
+        }
+        _position = (int) position;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int count) {
+        return read(buffer, 0, count);
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int count) {
+        final int read = Math.min(count, _bytes.length - _position);
+        if (_position + read > _failAt) {
+            throw new UncheckedIOException(new IOException("failed to read at position " + _failAt));
+        }
+        System.arraycopy(_bytes, _position, buffer, offset, read);
+        _position += read;
+        return read;
+    }
+
+    @Override
+    public byte[] readNBytes(final int count) {
+        final int read = Math.min(count, _bytes.length - _position);
+        final byte[] bytes = Arrays.copyOfRange(_bytes, _position, _position + read);
+        _position += read;
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,122 @@
+package org.hansken.plugin.extraction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.hansken.plugin.extraction.core.data.RandomAccessDatas.asInputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reading a .peb file of 32 MiB with the {@link LineReader}, as the {@link SecretsPlugin} does, to reading it
+ * with a {@link Scanner}, as the plugin did before: the text section of 16 MiB is written to a stream and the 16 MiB
+ * of base 64 encoded pictures are decoded.
+ * <p>
+ * The {@code megabytes} counter gives the throughput in MB/s. Run with {@code -prof gc} to also see the allocation
+ * per file in {@code gc.alloc.rate.norm}, for example
+ * {@code mvn -Pbenchmark test -Dbenchmark=LineReader -Dbenchmark.args="-prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineReaderBenchmark {
+
+    private static final int SECTION_SIZE = 16 * 1024 * 1024;
+    private static final int PICTURE_SIZE = 48 * 1024;
+
+    private ByteArrayData _data;
+    private double _megabytes;
+
+    /**
+     * Counts the read megabytes, which JMH reports per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(42);
+        final ByteArrayOutputStream file = new ByteArrayOutputStream(2 * SECTION_SIZE + 1024 * 1024);
+        // text lines of 1 to 160 characters, followed by the empty line
+        while (file.size() < SECTION_SIZE) {
+            final char[] line = new char[1 + random.nextInt(160)];
+            for (int i = 0; i < line.length; i++) {
+                line[i] = (char) ('!' + random.nextInt(94));
+            }
+            file.writeBytes(new String(line).getBytes(UTF_8));
+            file.write('\n');
+        }
+        file.write('\n');
+        // a picture per line
+        final byte[] picture = new byte[PICTURE_SIZE];
+        while (file.size() < 2 * SECTION_SIZE) {
+            random.nextBytes(picture);
+            file.writeBytes(Base64.getEncoder().encode(picture));
+            file.write('\n');
+        }
+        final byte[] bytes = file.toByteArray();
+        _data = new ByteArrayData(bytes);
+        _megabytes = bytes.length / 1e6;
+    }
+
+    @Benchmark
+    public void lineReader(final Throughput throughput) throws IOException {
+        _data.seek(0);
+        final OutputStream text = OutputStream.nullOutputStream();
+        final LineReader lines = new LineReader(_data);
+        final SecretsPlugin.TextLineWriter writer = new SecretsPlugin.TextLineWriter(text);
+        while (lines.hasNextLine()) {
+            if (!writer.write(lines.nextLine())) {
+                break;
+            }
+        }
+        while (lines.hasNextLine()) {
+            Base64.getDecoder().wrap(lines.nextLine()).transferTo(OutputStream.nullOutputStream());
+        }
+        throughput.megabytes += _megabytes;
+    }
+
+    @Benchmark
+    public void scanner(final Throughput throughput) throws IOException {
+        _data.seek(0);
+        final OutputStream text = OutputStream.nullOutputStream();
+        // the loops as they were before the line reader: a String per line, decoded and encoded again
+        try (Scanner scanner = new Scanner(asInputStream(_data))) {
+            while (scanner.hasNextLine()) {
+                final String line = scanner.nextLine();
+                if (line.isBlank()) {
+                    break;
+                }
+                text.write(line.getBytes(UTF_8));
+            }
+            while (scanner.hasNextLine()) {
+                OutputStream.nullOutputStream().write(Base64.getDecoder().decode(scanner.nextLine().getBytes(UTF_8)));
+            }
+        }
+        throughput.megabytes += _megabytes;
+    }
+}
@@ -0,0 +1,38 @@
+package org.hansken.plugin.extraction;
+
+import static nl.minvenj.nfi.flits.util.FlitsUtil.srcPath;
+
+import java.nio.file.Path;
+
+import org.hansken.plugin.extraction.api.ExtractionPlugin;
+import org.hansken.plugin.extraction.test.EmbeddedExtractionPluginFlits;
+
+/**
+ * Decodes the pictures on 4 threads, holding at most 16 KiB of pictures: the smaller pictures are decoded on the
+ * thread pool, the larger ones while they are read. The results are the same as when decoding on a single thread.
+ */
+class SecretsPluginParallelIT extends EmbeddedExtractionPluginFlits {
+
+    private static final int DECODE_THREADS = 4;
+    private static final long DECODE_BYTES = 16 * 1024;
+
+    @Override
+    protected ExtractionPlugin pluginToTest() {
+        return new SecretsPlugin(DECODE_THREADS, DECODE_BYTES);
+    }
+
+    @Override
+    public Path testPath() {
+        return srcPath("inputs");
+    }
+
+    @Override
+    public Path resultPath() {
+        return srcPath("results");
+    }
+
+    @Override
+    public boolean regenerate() {
+        return false;
+    }
+}
\ No newline at end of file